@@ -0,0 +1,19 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//deadline.* - see DeadlineFilter
+@Data
+@ConfigurationProperties(prefix = "deadline")
+public class DeadlineProperties {
+
+    private boolean enabled = true;
+    private Duration defaultTimeout = Duration.ofSeconds(5);
+    private Map<String, Duration> routes = new LinkedHashMap<>(); //path pattern -> timeout, first match wins, 0 = no deadline
+    private Duration ndjsonTimeout; //when set, instead of the route's for Accept: application/x-ndjson (0 = no deadline) - bulk reads last as long as the reader takes
+}
@@ -0,0 +1,20 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.ReactiveTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(TracingProperties.class)
+public class TracingConfig {
+
+    //slice tests don't bring a MeterRegistry, fall back to a local one there
+    @Bean
+    public ReactiveTracing reactiveTracing(TracingProperties tracingProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ReactiveTracing(tracingProperties, meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+    }
+}
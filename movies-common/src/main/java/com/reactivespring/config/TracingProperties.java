@@ -0,0 +1,26 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import reactor.core.publisher.SignalType;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+//tracing.* - replaces the per-signal .log() calls, see ReactiveTracing
+@Data
+@ConfigurationProperties(prefix = "tracing")
+public class TracingProperties {
+
+    private boolean enabled = true;
+    private boolean metrics = true; //time every subscription, cheap enough to keep on for all of them
+    private double sampleRate = 0.01; //share of subscriptions whose signals are logged
+    private Map<String, Double> routes = new HashMap<>(); //per route sample rate, overrides sampleRate
+    private Set<SignalType> signals = EnumSet.of(SignalType.ON_COMPLETE, SignalType.ON_ERROR, SignalType.CANCEL);
+
+    public double sampleRate(String route) {
+        return routes.getOrDefault(route, sampleRate);
+    }
+}
@@ -0,0 +1,100 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.DeadlineProperties;
+import com.reactivespring.util.Deadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+//deadline for the whole exchange: the caller's X-Request-Timeout-Ms, capped by the route's timeout (deadline.routes,
+//else deadline.defaultTimeout). the Deadline goes into the Reactor Context for the downstream calls, and when it
+//passes everything still running for the request (WebClient calls, Mongo queries) is cancelled and 504 is returned
+@Slf4j
+public class DeadlineFilter implements WebFilter, Ordered {
+
+    private final DeadlineProperties properties;
+    private final Map<PathPattern, Duration> routes = new LinkedHashMap<>();
+
+    public DeadlineFilter(DeadlineProperties properties) {
+        this.properties = properties;
+        properties.getRoutes().forEach((pattern, timeout) -> routes.put(PathPatternParser.defaultInstance.parse(pattern), timeout));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE; //outermost, so the deadline covers every other filter as well
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!properties.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        Duration timeout = timeoutFor(exchange.getRequest());
+        if (timeout == null) {
+            return chain.filter(exchange);
+        }
+        if (timeout.isZero() || timeout.isNegative()) {
+            return gatewayTimeout(exchange, null); //the caller has already given up
+        }
+        Deadline deadline = Deadline.after(timeout);
+        return chain.filter(exchange)
+                .timeout(timeout)
+                .onErrorResume(TimeoutException.class, ex -> gatewayTimeout(exchange, ex))
+                .contextWrite(context -> context.put(Deadline.class, deadline));
+    }
+
+    //null - no deadline for this request
+    private Duration timeoutFor(ServerHttpRequest request) {
+        Duration routeTimeout = properties.getDefaultTimeout();
+        PathContainer path = request.getPath().pathWithinApplication();
+        for (Map.Entry<PathPattern, Duration> route : routes.entrySet()) {
+            if (route.getKey().matches(path)) {
+                routeTimeout = route.getValue();
+                break;
+            }
+        }
+        if (properties.getNdjsonTimeout() != null
+                && request.getHeaders().getAccept().stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype)) {
+            routeTimeout = properties.getNdjsonTimeout();
+        }
+        if (routeTimeout == null || routeTimeout.isZero()) {
+            routeTimeout = null;
+        }
+
+        String header = request.getHeaders().getFirst(Deadline.HEADER);
+        if (header == null) {
+            return routeTimeout;
+        }
+        try {
+            Duration callerTimeout = Duration.ofMillis(Long.parseLong(header.trim()));
+            return routeTimeout == null || callerTimeout.compareTo(routeTimeout) < 0 ? callerTimeout : routeTimeout;
+        } catch (NumberFormatException ex) {
+            log.debug("Ignoring invalid {} header : {}", Deadline.HEADER, header);
+            return routeTimeout;
+        }
+    }
+
+    private static Mono<Void> gatewayTimeout(ServerWebExchange exchange, TimeoutException ex) {
+        log.info("Deadline exceeded for {} {}", exchange.getRequest().getMethod(), exchange.getRequest().getPath());
+        if (exchange.getResponse().isCommitted()) {
+            return ex != null ? Mono.error(ex) : Mono.empty(); //too late for a status - drop the connection
+        }
+        exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT);
+        return exchange.getResponse().setComplete();
+    }
+}
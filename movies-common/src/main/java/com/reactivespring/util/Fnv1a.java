@@ -0,0 +1,30 @@
+package com.reactivespring.util;
+
+import java.nio.charset.StandardCharsets;
+
+//64 bit FNV-1a over a sequence of values - cheap and stable across JVMs and services, for the weak ETags each
+//service computes from its objects in memory (see ETags there). start from OFFSET and add the values in a fixed order
+public final class Fnv1a {
+
+    public static final long OFFSET = 0xcbf29ce484222325L;
+
+    private static final long PRIME = 0x100000001b3L;
+
+    private Fnv1a() {
+    }
+
+    public static long add(long hash, Object value) {
+        //the separator keeps ("ab", "c") and ("a", "bc") apart, null hashes differently from "null"
+        byte[] bytes = value == null ? new byte[]{0} : (value + "\u001f").getBytes(StandardCharsets.UTF_8);
+        for (byte b : bytes) {
+            hash ^= b & 0xff;
+            hash *= PRIME;
+        }
+        return hash;
+    }
+
+    //weak, because the JSON and Smile representations of one version share it
+    public static String weakETag(long hash) {
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+}
@@ -0,0 +1,114 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.TracingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+import reactor.core.publisher.SignalType;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+//sampled replacement for .log(): every subscription is timed into reactive.pipeline{route,signal}, only a
+//sampled share of them logs its signals, filtered by tracing.signals. use it with transform(tracing.flux("route"))
+@Slf4j
+public class ReactiveTracing {
+
+    private final TracingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public ReactiveTracing(TracingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> flux(String route) {
+        return flux -> {
+            if (!properties.isEnabled()) {
+                return flux;
+            }
+            return Flux.defer(() -> {
+                var trace = new Trace(route);
+                return flux.doOnEach(trace::onSignal)
+                        .doOnCancel(trace::onCancel);
+            });
+        };
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> mono(String route) {
+        return mono -> {
+            if (!properties.isEnabled()) {
+                return mono;
+            }
+            return Mono.defer(() -> {
+                var trace = new Trace(route);
+                return mono.doOnEach(trace::onSignal)
+                        .doOnCancel(trace::onCancel);
+            });
+        };
+    }
+
+    private Timer timer(String route, SignalType signalType) {
+        return timers.computeIfAbsent(route + ":" + signalType, key -> Timer.builder("reactive.pipeline")
+                .description("Time from subscription to the terminal signal")
+                .tags("route", route, "signal", signalType.toString())
+                .register(meterRegistry));
+    }
+
+    private class Trace {
+
+        private final String route;
+        private final boolean sampled;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private long elements;
+
+        Trace(String route) {
+            this.route = route;
+            double sampleRate = properties.sampleRate(route);
+            this.sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+
+        void onSignal(Signal<?> signal) {
+            SignalType type = signal.getType();
+            if (type == SignalType.ON_NEXT) {
+                elements++;
+                if (sampled && properties.getSignals().contains(type)) {
+                    log.info("[{}] onNext({})", route, signal.get());
+                }
+            } else if (type == SignalType.ON_COMPLETE || type == SignalType.ON_ERROR) {
+                finish(type, signal.getThrowable());
+            }
+        }
+
+        void onCancel() {
+            finish(SignalType.CANCEL, null);
+        }
+
+        private void finish(SignalType type, Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (properties.isMetrics()) {
+                timer(route, type).record(elapsed, TimeUnit.NANOSECONDS);
+            }
+            if (sampled && properties.getSignals().contains(type)) {
+                if (error != null) {
+                    log.info("[{}] {} after {} elements in {}ms : {}", route, type, elements,
+                            TimeUnit.NANOSECONDS.toMillis(elapsed), error.toString());
+                } else {
+                    log.info("[{}] {} after {} elements in {}ms", route, type, elements, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.DeadlineProperties;
+import com.reactivespring.util.Deadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeadlineFilterTest {
+
+    private final AtomicReference<Optional<Deadline>> seen = new AtomicReference<>();
+
+    private Optional<Deadline> deadlineFor(DeadlineProperties properties, MockServerHttpRequest request) {
+        new DeadlineFilter(properties)
+                .filter(MockServerWebExchange.from(request),
+                        exchange -> Mono.deferContextual(context -> {
+                            seen.set(Deadline.from(context));
+                            return Mono.empty();
+                        }))
+                .block();
+        return seen.get();
+    }
+
+    @Test
+    void ndjsonKeepsTheRouteTimeoutUnlessNdjsonTimeoutIsSet() {
+        //given
+        var properties = new DeadlineProperties();
+        var request = MockServerHttpRequest.get("/v1/movies").accept(MediaType.APPLICATION_NDJSON).build();
+
+        //when + then
+        assertTrue(deadlineFor(properties, request).isPresent());
+
+        properties.setNdjsonTimeout(Duration.ZERO);
+        assertTrue(deadlineFor(properties, request).isEmpty());
+    }
+
+    @Test
+    void callerTimeoutShortensTheRouteTimeout() {
+        //given
+        var properties = new DeadlineProperties();
+        var request = MockServerHttpRequest.get("/v1/movies").header(Deadline.HEADER, "200").build();
+
+        //when
+        var deadline = deadlineFor(properties, request);
+
+        //then
+        assertTrue(deadline.orElseThrow().remaining().compareTo(Duration.ofMillis(200)) <= 0);
+    }
+
+    @Test
+    void expiredCallerTimeoutIsAnsweredWith504() {
+        //given
+        var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies").header(Deadline.HEADER, "0").build());
+
+        //when
+        new DeadlineFilter(new DeadlineProperties()).filter(exchange, e -> Mono.empty()).block();
+
+        //then
+        assertEquals(HttpStatus.GATEWAY_TIMEOUT, exchange.getResponse().getStatusCode());
+    }
+}
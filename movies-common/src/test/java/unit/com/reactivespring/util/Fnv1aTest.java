@@ -0,0 +1,31 @@
+package com.reactivespring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class Fnv1aTest {
+
+    @Test
+    void valuesAreKeptApart() {
+        //when
+        long abThenC = Fnv1a.add(Fnv1a.add(Fnv1a.OFFSET, "ab"), "c");
+        long aThenBc = Fnv1a.add(Fnv1a.add(Fnv1a.OFFSET, "a"), "bc");
+
+        //then
+        assertNotEquals(abThenC, aThenBc);
+        assertNotEquals(Fnv1a.add(Fnv1a.OFFSET, null), Fnv1a.add(Fnv1a.OFFSET, "null"));
+        assertEquals(abThenC, Fnv1a.add(Fnv1a.add(Fnv1a.OFFSET, "ab"), "c"));
+    }
+
+    @Test
+    void weakETag() {
+        //when
+        String eTag = Fnv1a.weakETag(Fnv1a.add(Fnv1a.OFFSET, "Batman Begins"));
+
+        //then
+        assertTrue(eTag.matches("W/\"[0-9a-f]{1,16}\""), eTag);
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.util;
+
+import com.reactivespring.config.TracingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReactiveTracingTest {
+
+    @Test
+    void everySubscriptionIsTimedBySignal() {
+        //given
+        var meterRegistry = new SimpleMeterRegistry();
+        var properties = new TracingProperties();
+        properties.setSampleRate(0);
+        var tracing = new ReactiveTracing(properties, meterRegistry);
+
+        //when
+        var flux = Flux.just("a", "b").transform(tracing.flux("route"));
+        var error = Mono.<String>error(new RuntimeException("boom")).transform(tracing.mono("route"));
+
+        //then
+        StepVerifier.create(flux).expectNext("a", "b").verifyComplete();
+        StepVerifier.create(flux).expectNext("a", "b").verifyComplete();
+        StepVerifier.create(error).verifyError();
+        StepVerifier.create(Flux.never().transform(tracing.flux("route"))).thenCancel().verify();
+
+        assertEquals(2, meterRegistry.timer("reactive.pipeline", "route", "route", "signal", "onComplete").count());
+        assertEquals(1, meterRegistry.timer("reactive.pipeline", "route", "route", "signal", "onError").count());
+        assertEquals(1, meterRegistry.timer("reactive.pipeline", "route", "route", "signal", "cancel").count());
+    }
+
+    @Test
+    void disabledTracingLeavesThePipelineAlone() {
+        //given
+        var meterRegistry = new SimpleMeterRegistry();
+        var properties = new TracingProperties();
+        properties.setEnabled(false);
+        var tracing = new ReactiveTracing(properties, meterRegistry);
+
+        //when
+        var flux = Flux.just("a").transform(tracing.flux("route"));
+
+        //then
+        StepVerifier.create(flux).expectNext("a").verifyComplete();
+        assertNull(meterRegistry.find("reactive.pipeline").timer());
+    }
+}
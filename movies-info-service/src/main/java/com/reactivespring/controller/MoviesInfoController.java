@@ -1,16 +1,29 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.domain.BulkItemResult;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.ETags;
+import com.reactivespring.util.MovieInfoCursor;
+import com.reactivespring.util.ReactiveTracing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1")
@@ -18,37 +31,151 @@ import javax.validation.Valid;
 @Slf4j
 public class MoviesInfoController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final Set<String> MOVIE_INFO_FIELDS = new TreeSet<>(List.of("movieInfoId", "name", "year", "cast", "releaseDate"));
+
     private final MoviesInfoService moviesInfoService;
+    private final ReactiveTracing tracing;
+
+    @Value("${movieInfo.page.defaultLimit:100}")
+    private int defaultPageLimit;
+
+    @Value("${movieInfo.page.maxLimit:500}")
+    private int maxPageLimit;
+
+    @Value("${movieInfo.ndjson.batchSize:100}")
+    private int streamBatchSize;
+
+    @Value("${movieInfo.bulk.batchSize:500}")
+    private int bulkBatchSize;
+
+    @Value("${movieInfo.bulk.maxWait:100ms}")
+    private Duration bulkMaxWait;
+
+    @Value("${movieInfo.bulk.concurrency:4}")
+    private int bulkConcurrency;
 
+    @Value("${movieInfo.stream.heartbeat:15s}")
+    private Duration streamHeartbeat;
+
+    //the catalogue and ?year= come in pages: ?limit= (movieInfo.page.defaultLimit when not given), and the X-Next-Cursor
+    //of a page as ?cursor= for the next one. one MovieInfo more than the limit is read to know whether there is a next
+    //page. ?ids= and ?cast= are answered whole
     @GetMapping("/movieinfos")
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year){
+    public Mono<ResponseEntity<Flux<MovieInfo>>> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year,
+                                                                  @RequestParam(value = "ids", required = false) List<String> ids,
+                                                                  @RequestParam(value = "cast", required = false) String castMember,
+                                                                  @RequestParam(value = "limit", required = false) Integer limit,
+                                                                  @RequestParam(value = "cursor", required = false) String cursor){
+
+        log.debug("Year is : {}", year);
 
-        log.info("Year is : {}", year);
+        if (ids != null && !ids.isEmpty()) {
+            return Mono.just(ResponseEntity.ok().body(moviesInfoService.getMovieInfosByIds(ids)
+                    .transform(tracing.flux("getMovieInfosByIds"))));
+        }
 
-        if (year != null) {
-            return moviesInfoService.getMovieInfoByYear(year).log();
+        if (castMember != null) {
+            return Mono.just(ResponseEntity.ok().body(moviesInfoService.getMovieInfoByCast(castMember)
+                    .transform(tracing.flux("getMovieInfoByCast"))));
         }
 
-        return moviesInfoService.getAllMovieInfos().log();
+        int pageLimit = pageLimit(limit);
+        MovieInfoCursor after = cursor == null ? null : MovieInfoCursor.decode(cursor, year);
+        return moviesInfoService.getMovieInfoPage(year, after, pageLimit + 1)
+                .transform(tracing.flux(year == null ? "getAllMovieInfos" : "getMovieInfoByYear"))
+                .collectList()
+                .map(movieInfos -> {
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    List<MovieInfo> page = movieInfos;
+                    if (movieInfos.size() > pageLimit) {
+                        page = movieInfos.subList(0, pageLimit);
+                        response.header(NEXT_CURSOR_HEADER, new MovieInfoCursor(year, page.get(pageLimit - 1).getMovieInfoId()).encode());
+                    }
+                    return response.body(Flux.fromIterable(page));
+                });
+    }
+
+    //bulk readers: the whole catalogue (or ?year=) as NDJSON, one MovieInfo per line, instead of pages. the Mongo
+    //cursor is read as fast as the client takes the lines - see MoviesInfoService.streamMovieInfos
+    @GetMapping(value = "/movieinfos", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> streamAllMovieInfos(@RequestParam(value = "year", required = false) Integer year) {
+
+        return moviesInfoService.streamMovieInfos(year, streamBatchSize)
+                .transform(tracing.flux("streamMovieInfos"));
+    }
+
+    private int pageLimit(Integer limit) {
+        if (limit == null) {
+            return defaultPageLimit;
+        }
+        if (limit < 1 || limit > maxPageLimit) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageLimit);
+        }
+        return limit;
     }
 
     @GetMapping("/movieinfos/{id}")
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable("id") String id) {
+    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable("id") String id,
+                                                            @RequestParam(value = "fields", required = false) List<String> fields) {
+
+        //?fields=name,year - a Mongo projection, the other fields aren't read or sent
+        if (fields != null) {
+            return moviesInfoService.getMovieInfoById(id, projection(fields))
+                    .map(movieInfo -> ResponseEntity.ok().body(movieInfo))
+                    .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
+                    .transform(tracing.mono("getMovieInfoById"));
+        }
 
+        //the whole document carries an ETag - on a matching If-None-Match the result handler answers 304 and the
+        //body is never written
         return moviesInfoService.getMovieInfoById(id)
                 .map(movieInfo -> ResponseEntity.ok()
+                        .eTag(ETags.of(movieInfo))
                         .body(movieInfo))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+                .transform(tracing.mono("getMovieInfoById"));
+    }
+
+    //changes of the MovieInfo as server-sent events, as they are saved. comment-only heartbeats keep idle connections
+    //(and the read timeout of movies-service) alive, the first one goes out right away so the response is committed
+    @GetMapping(value = "/movieinfos/{id}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfo>> streamMovieInfo(@PathVariable("id") String id) {
+
+        Flux<ServerSentEvent<MovieInfo>> heartbeats = Flux.interval(Duration.ZERO, streamHeartbeat)
+                .map(tick -> ServerSentEvent.<MovieInfo>builder().comment("heartbeat").build());
+
+        return Flux.merge(moviesInfoService.streamMovieInfo(id).map(movieInfo -> ServerSentEvent.builder(movieInfo).build()),
+                heartbeats);
+    }
+
+    private static Set<String> projection(List<String> fields) {
+        Set<String> projection = fields.stream()
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!MOVIE_INFO_FIELDS.containsAll(projection)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fields must be any of " + MOVIE_INFO_FIELDS);
+        }
+        return projection;
     }
 
     @PostMapping("/movieinfos")
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<MovieInfo> addMovieInfo (@RequestBody @Valid MovieInfo movieInfo){
 
-        return moviesInfoService.addMovieInfo(movieInfo).log();
+        return moviesInfoService.addMovieInfo(movieInfo)
+                .transform(tracing.mono("addMovieInfo"));
     }
 
+    //catalogue loads: one MovieInfo per NDJSON line in, one BulkItemResult per line out, streamed as the batches are
+    //written. a bad line is reported in its result and doesn't fail the request - see MoviesInfoService.importMovieInfos
+    @PostMapping(value = "/movieinfos/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BulkItemResult> importMovieInfos(@RequestBody Flux<String> lines) {
+
+        return moviesInfoService.importMovieInfos(lines, bulkBatchSize, bulkMaxWait, bulkConcurrency)
+                .transform(tracing.flux("importMovieInfos"));
+    }
 
     @PutMapping("/movieinfos/{id}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieInfo (@RequestBody MovieInfo updatedMovieInfo, @PathVariable("id") String id){
@@ -56,14 +183,15 @@ public class MoviesInfoController {
         return moviesInfoService.updateMovieInfo(updatedMovieInfo, id)
                 .map(movieInfo -> ResponseEntity.ok().body(movieInfo))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+                .transform(tracing.mono("updateMovieInfo"));
     }
 
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void>deleteMovieInfo(@PathVariable("id") String id) {
 
-        return moviesInfoService.deleteMovieInfo(id).log();
+        return moviesInfoService.deleteMovieInfo(id)
+                .transform(tracing.mono("deleteMovieInfo"));
 
     }
 
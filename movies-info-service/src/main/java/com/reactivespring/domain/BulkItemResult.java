@@ -0,0 +1,24 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//outcome of one line of POST /v1/movieinfos/bulk. index is the line's position among the non-blank lines of the
+//request (results come back in completion order, not in line order), movieInfoId is set once the line was parsed
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkItemResult {
+
+    public enum Status {
+        CREATED, INVALID, DUPLICATE, FAILED
+    }
+
+    private long index;
+    private String movieInfoId;
+    private Status status;
+    private String error;
+}
@@ -1,5 +1,6 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document //mongo annotation
+@JsonInclude(JsonInclude.Include.NON_NULL) //?fields= responses leave out what wasn't asked for
 public class MovieInfo {
 
     @Id
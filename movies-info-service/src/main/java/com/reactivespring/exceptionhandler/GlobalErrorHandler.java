@@ -3,6 +3,7 @@ package com.reactivespring.exceptionhandler;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -23,7 +24,9 @@ public class GlobalErrorHandler {
                 .sorted()
                 .collect(Collectors.joining(", "));
         log.error("Error is : {}", error);
-        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.TEXT_PLAIN) //plain text whatever the caller accepts (e.g. Smile)
+                .body(error);
 
     }
 }
@@ -0,0 +1,166 @@
+package com.reactivespring.repo;
+
+import com.reactivespring.domain.MovieInfo;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+//the indexes the MovieInfo queries rely on - ?year= and its pages in _id order (year_id), findByName (name,
+//case-insensitive through the collation, the query has to use the same one) and ?cast= (cast, multikey: one entry
+//per cast member). they are created when the service starts (a no-op when they exist) and the collection is checked
+//against them: missing or different indexes, indexes nobody declared, and indexes without a single use for
+//movieInfo.indexes.unusedAfter are reported. $indexStats counts from index creation / mongod start, a younger unused
+//index (e.g. just created by ensureIndexes) is only noted
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MovieInfoIndexes implements ApplicationRunner {
+
+    public static final String NAME_COLLATION = "{ 'locale': 'en', 'strength': 2 }";
+
+    static final List<Index> DECLARED = List.of(
+            new Index().on("year", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("year_id"),
+            new Index().on("name", Sort.Direction.ASC).named("name_ci")
+                    .collation(Collation.of("en").strength(Collation.ComparisonLevel.secondary())),
+            new Index().on("cast", Sort.Direction.ASC).named("cast"));
+
+    private static final String ID_INDEX = "_id_";
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Value("${movieInfo.indexes.ensure:true}")
+    private boolean ensure;
+
+    @Value("${movieInfo.indexes.timeout:30s}")
+    private Duration timeout;
+
+    @Value("${movieInfo.indexes.unusedAfter:7d}")
+    private Duration unusedAfter = Duration.ofDays(7);
+
+    @Override
+    public void run(ApplicationArguments args) {
+        try {
+            (ensure ? ensureIndexes() : Mono.<Void>empty())
+                    .then(report())
+                    .doOnNext(report -> {
+                        if (report.getProblems().isEmpty()) {
+                            log.info("Indexes of {} verified : {}", collectionName(), indexNames());
+                        } else {
+                            report.getProblems().forEach(problem -> log.warn("Index check of {} : {}", collectionName(), problem));
+                        }
+                        report.getNotes().forEach(note -> log.info("Index check of {} : {}", collectionName(), note));
+                    })
+                    .block(timeout);
+        } catch (RuntimeException ex) {
+            //queries still work without the indexes, only slower - don't keep the service from starting
+            log.error("Index check of {} failed : {}", collectionName(), ex.getMessage());
+        }
+    }
+
+    public Mono<Void> ensureIndexes() {
+        var indexOps = reactiveMongoTemplate.indexOps(MovieInfo.class);
+        return Flux.fromIterable(DECLARED)
+                .concatMap(indexOps::ensureIndex)
+                .then();
+    }
+
+    //problems are empty when the collection has exactly the declared indexes and all of them are used, notes tell of
+    //unused indexes too young to be a problem
+    public Mono<Report> report() {
+        Mono<List<IndexInfo>> existing = reactiveMongoTemplate.indexOps(MovieInfo.class).getIndexInfo().collectList();
+        Mono<Map<String, Document>> stats = reactiveMongoTemplate.getCollection(collectionName())
+                .flatMapMany(collection -> Flux.from(collection.aggregate(List.of(new Document("$indexStats", new Document())))))
+                .collectMap(stat -> stat.getString("name"));
+
+        return Mono.zip(existing, stats, (indexes, usage) -> {
+            List<String> problems = new ArrayList<>();
+            List<String> notes = new ArrayList<>();
+            Instant unusedBefore = Instant.now().minus(unusedAfter);
+            Map<String, IndexInfo> byName = indexes.stream().collect(Collectors.toMap(IndexInfo::getName, index -> index));
+            for (Index declared : DECLARED) {
+                String name = declared.getIndexOptions().getString("name");
+                IndexInfo index = byName.get(name);
+                if (index == null) {
+                    problems.add("missing index " + name + " " + declared.getIndexKeys().toJson());
+                } else if (!matches(declared, index)) {
+                    problems.add("index " + name + " differs from its declaration : " + index);
+                }
+            }
+            for (IndexInfo index : indexes) {
+                if (!ID_INDEX.equals(index.getName()) && !indexNames().contains(index.getName())) {
+                    problems.add("undeclared index " + index.getName() + " : " + index.getIndexFields());
+                }
+                Document accesses = usage.getOrDefault(index.getName(), new Document()).get("accesses", Document.class);
+                if (!ID_INDEX.equals(index.getName()) && accesses != null && accesses.get("ops", Number.class).longValue() == 0) {
+                    Instant since = accesses.get("since", Date.class).toInstant();
+                    String unused = "unused index " + index.getName() + " (no queries since " + since + ")";
+                    (since.isBefore(unusedBefore) ? problems : notes).add(unused);
+                }
+            }
+            return new Report(problems, notes);
+        });
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Report {
+        private final List<String> problems;
+        private final List<String> notes;
+    }
+
+    private static boolean matches(Index declared, IndexInfo index) {
+        List<IndexField> fields = index.getIndexFields();
+        Document keys = declared.getIndexKeys();
+        if (fields.size() != keys.size()) {
+            return false;
+        }
+        int i = 0;
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            IndexField field = fields.get(i++);
+            Sort.Direction direction = ((Number) key.getValue()).intValue() > 0 ? Sort.Direction.ASC : Sort.Direction.DESC;
+            if (!field.getKey().equals(key.getKey()) || field.getDirection() != direction) {
+                return false;
+            }
+        }
+        Document collation = declared.getIndexOptions().get("collation", Document.class);
+        Document existingCollation = index.getCollation().orElse(null);
+        if (collation == null || existingCollation == null) {
+            return collation == existingCollation;
+        }
+        //the server fills in every collation option, only the declared ones are compared
+        return collation.entrySet().stream()
+                .allMatch(option -> Objects.equals(option.getValue(), existingCollation.get(option.getKey())));
+    }
+
+    private static List<String> indexNames() {
+        return DECLARED.stream()
+                .map(index -> index.getIndexOptions().getString("name"))
+                .collect(Collectors.toList());
+    }
+
+    private String collectionName() {
+        return reactiveMongoTemplate.getCollectionName(MovieInfo.class);
+    }
+}
@@ -1,13 +1,22 @@
 package com.reactivespring.repo;
 
 import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface MoviesInfoRepo extends ReactiveMongoRepository<MovieInfo, String> {
+import java.util.Collection;
+
+public interface MoviesInfoRepo extends ReactiveMongoRepository<MovieInfo, String>, MoviesInfoRepoCustom {
 
     Flux<MovieInfo> findByYear(Integer year);
 
+    //case-insensitive, the collation of the name_ci index - see MovieInfoIndexes
+    @Query(value = "{ 'name': ?0 }", collation = MovieInfoIndexes.NAME_COLLATION)
     Mono<MovieInfo> findByName(String name);
+
+    Flux<MovieInfo> findByCast(String castMember); //movies the cast member is in, matches any element of cast
+
+    Flux<MovieInfo> findByMovieInfoIdIn(Collection<String> movieInfoIds); //single $in query on _id
 }
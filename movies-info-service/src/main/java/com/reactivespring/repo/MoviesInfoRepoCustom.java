@@ -0,0 +1,27 @@
+package com.reactivespring.repo;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.util.MovieInfoCursor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface MoviesInfoRepoCustom {
+
+    //only the given MovieInfo properties are read from Mongo (movieInfoId always), the others stay null
+    Mono<MovieInfo> findProjectedById(String id, Collection<String> fields);
+
+    //keyset page in movieInfoId order, of one year when year isn't null: the next limit MovieInfos after the cursor
+    //(from the start when null). an index seek on _id / (year, _id) - the same cost however deep the page is
+    Flux<MovieInfo> findMovieInfoPage(Integer year, MovieInfoCursor after, int limit);
+
+    //every MovieInfo (of one year when year isn't null), read from the cursor batchSize documents per getMore
+    Flux<MovieInfo> streamMovieInfos(Integer year, int batchSize);
+
+    //one unordered insertMany: a failed document doesn't stop the others. the write errors, by position in the list,
+    //of the documents that weren't inserted. every MovieInfo gets its movieInfoId set, the given or the generated one
+    Mono<List<BulkWriteError>> insertUnordered(List<MovieInfo> movieInfos);
+}
@@ -0,0 +1,89 @@
+package com.reactivespring.repo;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.InsertManyOptions;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.util.MovieInfoCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class MoviesInfoRepoCustomImpl implements MoviesInfoRepoCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Mono<MovieInfo> findProjectedById(String id, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("movieInfoId").is(id));
+        fields.forEach(field -> query.fields().include(field)); //property names, mapped to the document fields like the criteria
+        return reactiveMongoTemplate.findOne(query, MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findMovieInfoPage(Integer year, MovieInfoCursor after, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (year != null) {
+            criteria.add(Criteria.where("year").is(year));
+        }
+        if (after != null) {
+            criteria.add(after(after.getMovieInfoId()));
+        }
+        Query query = new Query(criteria.isEmpty() ? new Criteria() : new Criteria().andOperator(criteria.toArray(new Criteria[0])))
+                .with(Sort.by(Sort.Direction.ASC, "movieInfoId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> streamMovieInfos(Integer year, int batchSize) {
+        Query query = year == null ? new Query() : Query.query(Criteria.where("year").is(year));
+        query.cursorBatchSize(batchSize);
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Mono<List<BulkWriteError>> insertUnordered(List<MovieInfo> movieInfos) {
+        List<Document> documents = movieInfos.stream()
+                .map(movieInfo -> {
+                    Document document = new Document();
+                    reactiveMongoTemplate.getConverter().write(movieInfo, document);
+                    return document;
+                })
+                .collect(Collectors.toList());
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.insertMany(documents, new InsertManyOptions().ordered(false))))
+                .map(result -> List.<BulkWriteError>of())
+                .onErrorResume(MongoBulkWriteException.class, ex -> Mono.just(ex.getWriteErrors()))
+                .doOnNext(writeErrors -> {
+                    //the driver adds the generated _id to the documents it sends, failed ones included
+                    for (int i = 0; i < movieInfos.size(); i++) {
+                        movieInfos.get(i).setMovieInfoId(documents.get(i).get("_id").toString());
+                    }
+                });
+    }
+
+    //generated ids are ObjectIds, given ones (e.g. "abc") strings. _id sorts strings before ObjectIds, but $gt only
+    //matches values of its own type - after a string id the ObjectIds are all still to come
+    private static Criteria after(String movieInfoId) {
+        if (ObjectId.isValid(movieInfoId)) {
+            return Criteria.where("movieInfoId").gt(new ObjectId(movieInfoId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("movieInfoId").gt(movieInfoId),
+                Criteria.where("movieInfoId").type(JsonSchemaObject.Type.objectIdType()));
+    }
+}
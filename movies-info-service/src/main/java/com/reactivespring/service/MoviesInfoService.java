@@ -1,20 +1,136 @@
 package com.reactivespring.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.domain.BulkItemResult;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.repo.MoviesInfoRepo;
+import com.reactivespring.util.Batches;
+import com.reactivespring.util.MovieInfoCursor;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class MoviesInfoService {
 
+    private static final int DUPLICATE_KEY = 11000;
+
     private final MoviesInfoRepo moviesInfoRepo;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    //saved MovieInfos for streamMovieInfo. best effort: nothing is kept without subscribers, and a subscriber that
+    //can't keep up misses changes instead of holding back the others
+    private final Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().multicast().directBestEffort();
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-       return moviesInfoRepo.save(movieInfo);
+       return moviesInfoRepo.save(movieInfo)
+               .doOnNext(this::publish);
+    }
+
+    //one result per non-blank line. lines are parsed and validated one by one, the valid MovieInfos go to Mongo in
+    //unordered insertMany batches of up to batchSize, or whatever came within maxWait, at most concurrency batches at
+    //a time - the request body is only read as fast as the batches are written (see Batches). a failed batch (e.g.
+    //Mongo unavailable) fails its lines, not the import
+    public Flux<BulkItemResult> importMovieInfos(Flux<String> lines, int batchSize, Duration maxWait, int concurrency) {
+
+        Flux<BulkLine> parsed = lines.filter(line -> !line.isBlank())
+                .index((index, line) -> parse(index, line));
+        return Batches.bySizeOrAge(parsed, batchSize, maxWait)
+                .flatMap(this::importBatch, concurrency);
+    }
+
+    private BulkLine parse(long index, String line) {
+        MovieInfo movieInfo;
+        try {
+            movieInfo = objectMapper.readValue(line, MovieInfo.class);
+        } catch (JsonProcessingException ex) {
+            return new BulkLine(index, null, "line is not a MovieInfo : " + ex.getOriginalMessage());
+        }
+        String error = validator.validate(movieInfo).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", ")); //as GlobalErrorHandler reports a POST /v1/movieinfos body
+        return new BulkLine(index, movieInfo, error.isEmpty() ? null : error);
+    }
+
+    private Flux<BulkItemResult> importBatch(List<BulkLine> batch) {
+        List<BulkItemResult> results = new ArrayList<>();
+        List<BulkLine> valid = new ArrayList<>();
+        for (BulkLine line : batch) {
+            if (line.getError() == null) {
+                valid.add(line);
+            } else {
+                results.add(result(line, BulkItemResult.Status.INVALID, line.getError()));
+            }
+        }
+        if (valid.isEmpty()) {
+            return Flux.fromIterable(results);
+        }
+
+        List<MovieInfo> movieInfos = valid.stream().map(BulkLine::getMovieInfo).collect(Collectors.toList());
+        return moviesInfoRepo.insertUnordered(movieInfos)
+                .map(writeErrors -> {
+                    Map<Integer, BulkWriteError> errorsByPosition = writeErrors.stream()
+                            .collect(Collectors.toMap(BulkWriteError::getIndex, Function.identity()));
+                    for (int i = 0; i < valid.size(); i++) {
+                        BulkWriteError writeError = errorsByPosition.get(i);
+                        if (writeError == null) {
+                            results.add(result(valid.get(i), BulkItemResult.Status.CREATED, null));
+                            publish(valid.get(i).getMovieInfo());
+                        } else if (writeError.getCode() == DUPLICATE_KEY) {
+                            results.add(result(valid.get(i), BulkItemResult.Status.DUPLICATE, "movieInfoId already exists"));
+                        } else {
+                            results.add(result(valid.get(i), BulkItemResult.Status.FAILED, writeError.getMessage()));
+                        }
+                    }
+                    return results;
+                })
+                .onErrorResume(ex -> {
+                    valid.forEach(line -> results.add(result(line, BulkItemResult.Status.FAILED, ex.getMessage())));
+                    return Mono.just(results);
+                })
+                .flatMapIterable(Function.identity());
+    }
+
+    private static BulkItemResult result(BulkLine line, BulkItemResult.Status status, String error) {
+        String movieInfoId = line.getMovieInfo() == null ? null : line.getMovieInfo().getMovieInfoId();
+        return new BulkItemResult(line.getIndex(), movieInfoId, status, error);
+    }
+
+    //a line of a bulk import, error is set when it can't be inserted
+    @Value
+    private static class BulkLine {
+        long index;
+        MovieInfo movieInfo;
+        String error;
+    }
+
+    //the MovieInfo every time it is added or updated from now on
+    public Flux<MovieInfo> streamMovieInfo(String id) {
+        return movieInfoSink.asFlux()
+                .filter(movieInfo -> id.equals(movieInfo.getMovieInfoId()));
+    }
+
+    private void publish(MovieInfo movieInfo) {
+        //saves run concurrently - retry while another thread is emitting
+        movieInfoSink.emitNext(movieInfo, (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
     }
 
     public Flux<MovieInfo> getAllMovieInfos() {
@@ -25,6 +141,10 @@ public class MoviesInfoService {
         return moviesInfoRepo.findById(id);
     }
 
+    public Mono<MovieInfo> getMovieInfoById(String id, Collection<String> fields) {
+        return moviesInfoRepo.findProjectedById(id, fields);
+    }
+
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
         return moviesInfoRepo.findById(id)
                 .flatMap(movieInfo -> {
@@ -33,7 +153,8 @@ public class MoviesInfoService {
                     movieInfo.setName(updatedMovieInfo.getName());
                     movieInfo.setReleaseDate(updatedMovieInfo.getReleaseDate());
                     return moviesInfoRepo.save(movieInfo);
-                });
+                })
+                .doOnNext(this::publish);
     }
 
     public Mono<Void> deleteMovieInfo(String id) {
@@ -44,4 +165,28 @@ public class MoviesInfoService {
 
         return moviesInfoRepo.findByYear(year);
     }
+
+    public Flux<MovieInfo> getMovieInfoPage(Integer year, MovieInfoCursor after, int limit) {
+
+        return moviesInfoRepo.findMovieInfoPage(year, after, limit);
+    }
+
+    //the driver asks for at most the outstanding demand per getMore, and limitRate keeps that demand at batchSize - the
+    //next batch is only fetched once most of the previous one has been taken downstream. a slow reader costs fewer
+    //getMores, never a growing buffer
+    public Flux<MovieInfo> streamMovieInfos(Integer year, int batchSize) {
+
+        return moviesInfoRepo.streamMovieInfos(year, batchSize)
+                .limitRate(batchSize);
+    }
+
+    public Flux<MovieInfo> getMovieInfoByCast(String castMember) {
+
+        return moviesInfoRepo.findByCast(castMember);
+    }
+
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids) {
+
+        return moviesInfoRepo.findByMovieInfoIdIn(ids);
+    }
 }
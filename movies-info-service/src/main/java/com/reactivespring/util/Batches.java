@@ -0,0 +1,67 @@
+package com.reactivespring.util;
+
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//bufferTimeout for a consumer that isn't always ready: batches of up to size elements, closed early once the first
+//element of a batch is maxWait old. bufferTimeout (and windowTimeout) of Reactor 3.4 fail with an overflow when their
+//timer fires while downstream has no demand - here the timer only sends a tick that wakes the age check, ticks nobody
+//asked for are dropped, and the source is read only as fast as the batches are taken
+public final class Batches {
+
+    private static final Object TICK = new Object();
+
+    private Batches() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> Flux<List<T>> bySizeOrAge(Flux<T> source, int size, Duration maxWait) {
+        return Flux.defer(() -> {
+            var batch = new Batch(size, maxWait.toNanos());
+            return source.publish(shared -> Flux.<Object>merge(shared, Flux.interval(maxWait)
+                            .map(tick -> TICK)
+                            .onBackpressureDrop()
+                            .takeUntilOther(shared.ignoreElements())))
+                    .bufferUntil(batch::closedBy)
+                    .map(elements -> elements.stream()
+                            .filter(element -> element != TICK)
+                            .map(element -> (T) element)
+                            .collect(Collectors.toList()))
+                    .filter(elements -> !elements.isEmpty());
+        });
+    }
+
+    //per subscription, elements and ticks come in one at a time
+    private static class Batch {
+
+        private final int maxSize;
+        private final long maxWaitNanos;
+        private int size;
+        private long firstNanos;
+
+        Batch(int maxSize, long maxWaitNanos) {
+            this.maxSize = maxSize;
+            this.maxWaitNanos = maxWaitNanos;
+        }
+
+        boolean closedBy(Object element) {
+            long now = System.nanoTime();
+            boolean close;
+            if (element == TICK) {
+                close = size == 0 || now - firstNanos >= maxWaitNanos; //an empty one too, so idle ticks don't pile up in it
+            } else {
+                if (size++ == 0) {
+                    firstNanos = now;
+                }
+                close = size >= maxSize || now - firstNanos >= maxWaitNanos;
+            }
+            if (close) {
+                size = 0;
+            }
+            return close;
+        }
+    }
+}
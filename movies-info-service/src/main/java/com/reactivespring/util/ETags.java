@@ -0,0 +1,21 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.MovieInfo;
+
+//weak ETag of a MovieInfo: Fnv1a over its stored fields. it changes whenever the document does, and is
+//computed from the fields in memory - a 304 never needs the body serialized
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(MovieInfo movieInfo) {
+        long hash = Fnv1a.OFFSET;
+        hash = Fnv1a.add(hash, movieInfo.getMovieInfoId());
+        hash = Fnv1a.add(hash, movieInfo.getName());
+        hash = Fnv1a.add(hash, movieInfo.getYear());
+        hash = Fnv1a.add(hash, movieInfo.getCast());
+        hash = Fnv1a.add(hash, movieInfo.getReleaseDate());
+        return Fnv1a.weakETag(hash);
+    }
+}
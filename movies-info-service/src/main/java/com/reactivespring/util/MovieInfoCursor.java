@@ -0,0 +1,39 @@
+package com.reactivespring.util;
+
+import lombok.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+//opaque position in GET /v1/movieinfos: the last movieInfoId of a page, with the year when the pages are of
+//?year= - a token from one listing is refused by another
+@Value
+public class MovieInfoCursor {
+
+    Integer year; //null without ?year=
+    String movieInfoId;
+
+    public String encode() {
+        String value = (year == null ? "" : year) + ":" + movieInfoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static MovieInfoCursor decode(String cursor, Integer year) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 2);
+            if (parts.length != 2 || parts[1].isEmpty()) {
+                throw new IllegalArgumentException(cursor);
+            }
+            Integer cursorYear = parts[0].isEmpty() ? null : Integer.valueOf(parts[0]);
+            if (!Objects.equals(cursorYear, year)) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new MovieInfoCursor(cursorYear, parts[1]);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "cursor is not valid for this listing");
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.domain.BulkItemResult;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.repo.MoviesInfoRepo;
 import org.junit.jupiter.api.AfterEach;
@@ -8,13 +9,20 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.test.StepVerifier;
 
 import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -89,6 +97,72 @@ class MoviesInfoControllerIntegrationTest {
                 .hasSize(3);
     }
 
+    @Test
+    void importMovieInfos() {
+        //given
+        String body = String.join("\n",
+                "{\"name\":\"Batman Forever\",\"year\":1995,\"cast\":[\"Val Kilmer\"]}",
+                "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012}",
+                "{\"name\":\"\",\"year\":1997}",
+                "{\"movieInfoId\":\"def\",\"name\":\"Batman Returns\",\"year\":1992}") + "\n";
+
+        //when
+        var results = webTestClient
+                .post()
+                .uri(MOVIES_INFO_URL + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BulkItemResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then - abc is in the catalogue already, the line after it is inserted all the same
+        var statuses = results.stream()
+                .collect(Collectors.toMap(BulkItemResult::getIndex, BulkItemResult::getStatus));
+        assertEquals(List.of(BulkItemResult.Status.CREATED, BulkItemResult.Status.DUPLICATE,
+                        BulkItemResult.Status.INVALID, BulkItemResult.Status.CREATED),
+                List.of(statuses.get(0L), statuses.get(1L), statuses.get(2L), statuses.get(3L)));
+        StepVerifier.create(moviesInfoRepo.findAll())
+                .expectNextCount(5)
+                .verifyComplete();
+        StepVerifier.create(moviesInfoRepo.findById("def"))
+                .expectNextMatches(movieInfo -> movieInfo.getName().equals("Batman Returns"))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllMovieInfos_pages() {
+        //first page - generated ObjectIds and "abc" mixed, see MoviesInfoRepoCustomImpl
+        var firstPage = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class);
+        var cursor = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_CURSOR_HEADER);
+        var names = new ArrayList<>(firstPage.getResponseBody().map(MovieInfo::getName).collectList().block());
+        assertNotNull(cursor);
+
+        //last page
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=2&cursor={cursor}", cursor)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_CURSOR_HEADER)
+                .expectBodyList(MovieInfo.class)
+                .value(page -> page.forEach(movieInfo -> names.add(movieInfo.getName())));
+
+        assertEquals(Set.of("Batman Begins", "The Dark Knight", "Dark Knight Rises"), Set.copyOf(names));
+        assertEquals(3, names.size());
+    }
+
     @Test
     void getAllMovieInfoById() {
         var id = "abc";
@@ -136,6 +210,35 @@ class MoviesInfoControllerIntegrationTest {
                 .jsonPath("$.name").isEqualTo("Dark Knight Rises");
     }
 
+    @Test
+    void streamMovieInfo() {
+        //given
+        var updatedMovieInfo = new MovieInfo(null, "Dark Knight Rises1",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        var stream = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}/stream", "abc")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .filter(Objects::nonNull); //heartbeats
+
+        //when + then
+        StepVerifier.create(stream)
+                .then(() -> webTestClient
+                        .put()
+                        .uri(MOVIES_INFO_URL + "/{id}", "abc")
+                        .bodyValue(updatedMovieInfo)
+                        .exchange()
+                        .expectStatus().isOk())
+                .assertNext(movieInfo -> assertEquals("Dark Knight Rises1", movieInfo.getName()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
     @Test
     void updateMovieInfo() {
 
@@ -1,11 +1,14 @@
 package com.reactivespring.repo;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.util.MovieInfoCursor;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.test.context.ActiveProfiles;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -16,6 +19,8 @@ import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @DataMongoTest //this will scan you app for repository classes
 @ActiveProfiles("test")
@@ -24,6 +29,9 @@ class MoviesInfoRepoIntegrationTest {
     @Autowired
     MoviesInfoRepo moviesInfoRepo;
 
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
     @BeforeEach
     void setUp() {
         var movieInfos = List.of(new MovieInfo(null, "Batman Begins",
@@ -68,6 +76,23 @@ class MoviesInfoRepoIntegrationTest {
                 .verifyComplete();
     }
 
+    @Test
+    void findProjectedById() {
+        //when
+        var movieInfoMono = moviesInfoRepo.findProjectedById("abc", List.of("name", "year"));
+
+        //then - only the projected fields are read
+        StepVerifier.create(movieInfoMono)
+                .assertNext(movieInfo -> {
+                    assertEquals("abc", movieInfo.getMovieInfoId());
+                    assertEquals("Dark Knight Rises", movieInfo.getName());
+                    assertEquals(2012, movieInfo.getYear());
+                    assertNull(movieInfo.getCast());
+                    assertNull(movieInfo.getReleaseDate());
+                })
+                .verifyComplete();
+    }
+
     @Test
     void saveMovieInfo() {
         //given
@@ -146,4 +171,67 @@ class MoviesInfoRepoIntegrationTest {
                 })
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    void findMovieInfoPage_byYear() {
+        //given
+        moviesInfoRepo.save(new MovieInfo("def", "Batman Begins Remastered",
+                2005, List.of("Christian Bale"), LocalDate.parse("2021-06-15"))).block();
+
+        //when - the year has a generated ObjectId and "def", strings come first
+        var firstPage = moviesInfoRepo.findMovieInfoPage(2005, null, 1).collectList().block();
+        var secondPage = moviesInfoRepo.findMovieInfoPage(2005, new MovieInfoCursor(2005, firstPage.get(0).getMovieInfoId()), 1);
+
+        //then
+        assertEquals("def", firstPage.get(0).getMovieInfoId());
+        StepVerifier.create(secondPage)
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findByName_caseInsensitive() {
+        //when
+        Mono<MovieInfo> movieInfoMono = moviesInfoRepo.findByName("dark knight RISES");
+
+        //then
+        StepVerifier.create(movieInfoMono)
+                .assertNext(movieInfo -> assertEquals("Dark Knight Rises", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findByCast() {
+        //when
+        Flux<MovieInfo> movieInfoFlux = moviesInfoRepo.findByCast("Christian Bale");
+
+        //then
+        StepVerifier.create(movieInfoFlux)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void indexesAreCreatedAndVerified() {
+        //given
+        var indexes = new MovieInfoIndexes(reactiveMongoTemplate);
+
+        //when
+        indexes.ensureIndexes().block();
+
+        //then - present and as declared, the ones just created and not queried yet are only noted as unused
+        StepVerifier.create(reactiveMongoTemplate.indexOps(MovieInfo.class).getIndexInfo().map(IndexInfo::getName).collectList())
+                .assertNext(names -> assertTrue(names.containsAll(List.of("year_id", "name_ci", "cast"))))
+                .verifyComplete();
+        StepVerifier.create(moviesInfoRepo.findByYear(2005).then(indexes.report()))
+                .assertNext(report -> {
+                    var problems = report.getProblems();
+                    assertTrue(problems.stream().noneMatch(problem -> problem.startsWith("missing") || problem.contains("differs")),
+                            problems::toString);
+                    assertTrue(problems.stream().noneMatch(problem -> problem.startsWith("unused index")), problems::toString);
+                    assertTrue(report.getNotes().stream().noneMatch(note -> note.startsWith("unused index year_id ")),
+                            report.getNotes()::toString);
+                })
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,155 @@
+package com.reactivespring.controller;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.reactivespring.config.DeadlineConfig;
+import com.reactivespring.config.TracingConfig;
+import com.reactivespring.domain.BulkItemResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repo.MoviesInfoRepo;
+import com.reactivespring.service.MoviesInfoService;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+//the lines are parsed and validated by the real service, the insertMany batches go to a mocked repository
+@WebFluxTest(controllers = MoviesInfoController.class)
+@Import({TracingConfig.class, DeadlineConfig.class, MoviesInfoService.class})
+@TestPropertySource(properties = "movieInfo.bulk.batchSize=2")
+class MoviesInfoBulkImportTest {
+
+    private static final String BULK_URL = "/v1/movieinfos/bulk";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MoviesInfoService moviesInfoService;
+
+    @MockBean
+    private MoviesInfoRepo moviesInfoRepoMock;
+
+    @Test
+    void importMovieInfos() {
+        //given
+        String body = String.join("\n",
+                "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012,\"cast\":[\"Christian Bale\"]}",
+                "{\"name\":\"Batman Begins\",\"year\":2005",
+                "",
+                "{\"movieInfoId\":\"def\",\"name\":\"\",\"year\":-2008}",
+                "{\"movieInfoId\":\"ghi\",\"name\":\"The Dark Knight\",\"year\":2008}",
+                "{\"movieInfoId\":\"jkl\",\"name\":\"Batman Begins\",\"year\":2005}") + "\n";
+
+        //jkl exists already
+        when(moviesInfoRepoMock.insertUnordered(anyList())).thenAnswer(invocation -> {
+            List<MovieInfo> movieInfos = invocation.getArgument(0);
+            List<BulkWriteError> writeErrors = new ArrayList<>();
+            for (int i = 0; i < movieInfos.size(); i++) {
+                if ("jkl".equals(movieInfos.get(i).getMovieInfoId())) {
+                    writeErrors.add(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), i));
+                }
+            }
+            return Mono.just(writeErrors);
+        });
+
+        //when
+        var results = webTestClient
+                .post()
+                .uri(BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(BulkItemResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        //then
+        assertEquals(5, results.size());
+        Map<Long, BulkItemResult> byIndex = results.stream()
+                .collect(Collectors.toMap(BulkItemResult::getIndex, Function.identity()));
+        assertEquals(BulkItemResult.Status.CREATED, byIndex.get(0L).getStatus());
+        assertEquals("abc", byIndex.get(0L).getMovieInfoId());
+        assertEquals(BulkItemResult.Status.INVALID, byIndex.get(1L).getStatus());
+        assertEquals(BulkItemResult.Status.INVALID, byIndex.get(2L).getStatus());
+        assertEquals("movieInfo.name must be present, movieInfo.year must be positive value", byIndex.get(2L).getError());
+        assertEquals(BulkItemResult.Status.CREATED, byIndex.get(3L).getStatus());
+        assertEquals(BulkItemResult.Status.DUPLICATE, byIndex.get(4L).getStatus());
+        assertEquals("jkl", byIndex.get(4L).getMovieInfoId());
+        verify(moviesInfoRepoMock, times(3)).insertUnordered(anyList()); //batches of 2 lines, the invalid ones aren't sent
+    }
+
+    @Test
+    void importMovieInfos_failedBatch() {
+        //given
+        String body = "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012}\n";
+        when(moviesInfoRepoMock.insertUnordered(anyList())).thenReturn(Mono.error(new RuntimeException("Mongo unavailable")));
+
+        //when + then
+        webTestClient
+                .post()
+                .uri(BULK_URL)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(BulkItemResult.class)
+                .isEqualTo(List.of(new BulkItemResult(0, "abc", BulkItemResult.Status.FAILED, "Mongo unavailable")));
+    }
+
+    @Test
+    void importMovieInfos_slowLinesAndSlowInserts() {
+        //given - a line every 5ms, each insertMany takes 500ms: partial batches are due while all 4 are in flight
+        int lineCount = 400;
+        var read = new AtomicInteger();
+        var inFlight = new AtomicInteger();
+        var maxInFlight = new AtomicInteger();
+        Flux<String> lines = Flux.interval(Duration.ofMillis(5))
+                .take(lineCount)
+                .doOnNext(i -> read.incrementAndGet())
+                .map(i -> "{\"movieInfoId\":\"id" + i + "\",\"name\":\"Batman Begins\",\"year\":2005}");
+        when(moviesInfoRepoMock.insertUnordered(anyList())).thenAnswer(invocation -> Mono.fromRunnable(() -> {
+                    maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                })
+                .then(Mono.delay(Duration.ofMillis(500)))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .thenReturn(List.<BulkWriteError>of()));
+
+        //when
+        var results = moviesInfoService.importMovieInfos(lines, 500, Duration.ofMillis(100), 4)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        //then
+        assertEquals(lineCount, read.get());
+        assertEquals(lineCount, results.size());
+        assertTrue(results.stream().allMatch(result -> result.getStatus() == BulkItemResult.Status.CREATED));
+        assertEquals(lineCount, results.stream().map(BulkItemResult::getIndex).distinct().count());
+        assertTrue(maxInFlight.get() <= 4, "insertMany calls in flight: " + maxInFlight.get());
+    }
+}
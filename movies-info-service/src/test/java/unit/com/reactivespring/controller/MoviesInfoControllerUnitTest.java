@@ -1,18 +1,31 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.config.DeadlineConfig;
+import com.reactivespring.config.TracingConfig;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.service.MoviesInfoService;
+import com.reactivespring.util.Deadline;
+import com.reactivespring.util.ETags;
+import com.reactivespring.util.MovieInfoCursor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -20,6 +33,7 @@ import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
+@Import({TracingConfig.class, DeadlineConfig.class})
 @AutoConfigureWebTestClient
 class MoviesInfoControllerUnitTest {
 
@@ -40,7 +54,7 @@ class MoviesInfoControllerUnitTest {
                         2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
         //when
-        when(movieInfoServiceMock.getAllMovieInfos()).thenReturn(Flux.fromIterable(movieInfos));
+        when(movieInfoServiceMock.getMovieInfoPage(null, null, 101)).thenReturn(Flux.fromIterable(movieInfos));
 
         //then
         webTestClient
@@ -49,11 +63,138 @@ class MoviesInfoControllerUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_CURSOR_HEADER)
                 .expectBodyList(MovieInfo.class)
                 .hasSize(3);
 
     }
 
+    @Test
+    void getAllMoviesInfo_page() {
+        //given - one more than the limit means there is a next page
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "The Dark Knight",
+                        2012, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+        var after = new MovieInfoCursor(2012, "aaa");
+        when(movieInfoServiceMock.getMovieInfoPage(2012, after, 2)).thenReturn(Flux.fromIterable(movieInfos));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?year=2012&limit=1&cursor={cursor}", after.encode())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().valueEquals(MoviesInfoController.NEXT_CURSOR_HEADER, new MovieInfoCursor(2012, "abc").encode())
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getAllMoviesInfo_invalidPage() {
+        //cursor of another listing
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?year=2005&cursor={cursor}", new MovieInfoCursor(2012, "abc").encode())
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "?limit=0")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMoviesInfoByCast() {
+        //given
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        //when
+        when(movieInfoServiceMock.getMovieInfoByCast("Tom Hardy")).thenReturn(Flux.fromIterable(movieInfos));
+
+        //then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_INFO_URL)
+                        .queryParam("cast", "Tom Hardy")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getMoviesInfoByIds() {
+        //given
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                        2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "The Dark Knight",
+                        2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")));
+
+        //when
+        when(movieInfoServiceMock.getMovieInfosByIds(List.of("abc", "def"))).thenReturn(Flux.fromIterable(movieInfos));
+
+        //then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_INFO_URL)
+                        .queryParam("ids", "abc,def")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getMoviesInfoByIds_smile() {
+        //given
+        var smile = MediaType.parseMediaType("application/x-jackson-smile");
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        //when
+        when(movieInfoServiceMock.getMovieInfosByIds(List.of("abc"))).thenReturn(Flux.fromIterable(movieInfos));
+
+        //then - movies-service asks for Smile with JSON as fallback
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(MOVIES_INFO_URL)
+                        .queryParam("ids", "abc")
+                        .build())
+                .accept(smile, MediaType.parseMediaType("application/json;q=0.9"))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(smile)
+                .expectBodyList(MovieInfo.class)
+                .isEqualTo(movieInfos);
+    }
+
+    @Test
+    void getAllMoviesInfo_deadlineExceeded() {
+        //when - a query that never finishes
+        when(movieInfoServiceMock.getMovieInfoPage(null, null, 101)).thenReturn(Flux.never());
+
+        //then - movies-service only gave us 200ms
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL)
+                .header(Deadline.HEADER, "200")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
     @Test
     void getMoviesInfoById() {
         //given
@@ -80,6 +221,78 @@ class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void getMoviesInfoById_notModified() {
+        //given
+        var id = "abc";
+        var movieInfo = new MovieInfo(id, "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        //when
+        when(movieInfoServiceMock.getMovieInfoById(id)).thenReturn(Mono.just(movieInfo));
+
+        //then - first the ETag, then a conditional GET with it costs headers only
+        String eTag = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, ETags.of(movieInfo))
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+
+        //a changed document doesn't match anymore
+        movieInfo.setYear(2013);
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}", id)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void getMoviesInfoById_fields() {
+        //given
+        var id = "abc";
+
+        //when
+        when(movieInfoServiceMock.getMovieInfoById(id, Set.of("name", "year")))
+                .thenReturn(Mono.just(new MovieInfo(id, "Dark Knight Rises", 2012, null, null)));
+
+        //then - what wasn't projected isn't sent
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name,year", id)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.year").isEqualTo(2012)
+                .jsonPath("$.cast").doesNotExist()
+                .jsonPath("$.releaseDate").doesNotExist();
+    }
+
+    @Test
+    void getMoviesInfoById_unknownField() {
+        webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}?fields=name,budget", "abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void addMovieInfo() {
         //given
@@ -159,6 +372,32 @@ class MoviesInfoControllerUnitTest {
                 .expectStatus().isNoContent();
     }
 
+    @Test
+    void streamMovieInfo() {
+        //given
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises",
+                2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        when(movieInfoServiceMock.streamMovieInfo("abc")).thenReturn(Flux.just(movieInfo).concatWith(Flux.never()));
+
+        //when
+        var stream = webTestClient
+                .get()
+                .uri(MOVIES_INFO_URL + "/{id}/stream", "abc")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .filter(Objects::nonNull); //heartbeats
+
+        //then
+        StepVerifier.create(stream)
+                .assertNext(streamed -> assertEquals("Dark Knight Rises", streamed.getName()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
     @Test
     void addMovieInfo_validationBadRequest() {
 
@@ -0,0 +1,85 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.config.DeadlineConfig;
+import com.reactivespring.config.TracingConfig;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repo.MoviesInfoRepo;
+import com.reactivespring.service.MoviesInfoService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Flux;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+//a reader that takes its time must hold back the cursor: over a real connection, the MovieInfos produced but not yet
+//read stay within the batch and the socket buffers, not the size of the catalogue
+@WebFluxTest(controllers = MoviesInfoController.class)
+@Import({TracingConfig.class, DeadlineConfig.class, MoviesInfoService.class})
+@TestPropertySource(properties = "movieInfo.ndjson.batchSize=50")
+class MoviesInfoNdjsonSlowReaderTest {
+
+    private static final int CATALOGUE_SIZE = 100_000;
+    private static final String PADDING = "x".repeat(2_000); //~2KB per line, the catalogue is ~200MB
+
+    @MockBean
+    private MoviesInfoRepo moviesInfoRepo;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Test
+    void slowReaderHoldsBackTheCursor() {
+        //given
+        var produced = new AtomicLong();
+        var largestRequest = new AtomicLong();
+        when(moviesInfoRepo.streamMovieInfos(null, 50)).thenReturn(Flux.range(0, CATALOGUE_SIZE)
+                .doOnRequest(n -> largestRequest.accumulateAndGet(n, Math::max))
+                .map(i -> new MovieInfo("id" + i, "Movie " + i, 2000, List.of(PADDING), null))
+                .doOnNext(movieInfo -> produced.incrementAndGet()));
+
+        DisposableServer server = HttpServer.create()
+                .port(0)
+                .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+                .bindNow();
+        try {
+            //when - ~1.5MB read in small steps, pausing after each
+            var bytesRead = HttpClient.create()
+                    .headers(headers -> headers.set(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE))
+                    .get()
+                    .uri("http://localhost:" + server.port() + "/v1/movieinfos")
+                    .responseContent()
+                    .limitRate(1)
+                    .delayElements(Duration.ofMillis(2))
+                    .map(buffer -> (long) buffer.readableBytes())
+                    .scan(0L, Long::sum)
+                    .takeUntil(total -> total >= 1_500_000)
+                    .blockLast(Duration.ofSeconds(30));
+
+            //then
+            long linesRead = bytesRead / PADDING.length();
+            long aheadOfReader = produced.get() - linesRead;
+            assertTrue(aheadOfReader < 10_000, "produced " + produced.get() + ", read ~" + linesRead);
+            assertEquals(50, largestRequest.get()); //the demand reaching the cursor never exceeds the batch
+        } finally {
+            server.disposeNow();
+        }
+    }
+}
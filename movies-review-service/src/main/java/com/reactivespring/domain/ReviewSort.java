@@ -0,0 +1,22 @@
+package com.reactivespring.domain;
+
+import com.reactivespring.exception.ReviewDataException;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+//order of a page of reviews - NEWEST by reviewId (an ObjectId starts with its creation time), RATING highest first.
+//reviewId breaks ties, so every order is total and a page can continue after the last review of the previous one
+public enum ReviewSort {
+    NEWEST,
+    RATING;
+
+    public static ReviewSort from(String value) {
+        return Arrays.stream(values())
+                .filter(sort -> sort.name().equalsIgnoreCase(value.trim()))
+                .findFirst()
+                .orElseThrow(() -> new ReviewDataException("review.sort : must be one of " + Arrays.stream(values())
+                        .map(sort -> sort.name().toLowerCase())
+                        .collect(Collectors.joining(", "))));
+    }
+}
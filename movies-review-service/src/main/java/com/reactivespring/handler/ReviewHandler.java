@@ -1,21 +1,33 @@
 package com.reactivespring.handler;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSort;
 import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
 import com.reactivespring.repo.ReviewReactiveRepository;
+import com.reactivespring.util.ReactiveTracing;
+import com.reactivespring.util.ReviewCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 
 import javax.validation.ConstraintViolation;
 import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -25,19 +37,61 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class ReviewHandler {
 
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ReviewReactiveRepository reviewReactiveRepository;
 
     private final Validator validator;
 
+    private final ReactiveTracing tracing;
+
+    @Value("${reviews.page.maxLimit:100}")
+    private int maxPageLimit;
+
+    @Value("${reviews.stream.heartbeat:15s}")
+    private Duration streamHeartbeat;
+
+    //saved reviews for /v1/reviews/stream. best effort: nothing is kept without subscribers, and a subscriber that
+    //can't keep up misses reviews instead of holding back the others
+    private final Sinks.Many<Review> reviewSink = Sinks.many().multicast().directBestEffort();
+
     public Mono<ServerResponse> addReview(@NotNull ServerRequest request) {
 
         return request.bodyToMono(Review.class)
                 .doOnNext(this::validate)
                 .flatMap(reviewReactiveRepository::save)
+                .doOnNext(this::publish)
                 .flatMap(savedReview -> ServerResponse.status(HttpStatus.CREATED)
                         .bodyValue(savedReview));
     }
 
+    //?movieInfoId= - new and updated reviews of the movie as server-sent events, as they are saved. comment-only
+    //heartbeats keep idle connections (and the read timeout of movies-service) alive, the first one goes out right
+    //away so the response is committed before any review
+    public Mono<ServerResponse> streamReviews(@NotNull ServerRequest request) {
+
+        Long movieInfoId = request.queryParam("movieInfoId")
+                .map(id -> movieInfoId(id, "movieInfoId"))
+                .orElseThrow(() -> new ReviewDataException("review.movieInfoId : must be present"));
+
+        Flux<ServerSentEvent<Review>> reviews = reviewSink.asFlux()
+                .filter(review -> movieInfoId.equals(review.getMovieInfoId()))
+                .map(review -> ServerSentEvent.builder(review).id(review.getReviewId()).build());
+        Flux<ServerSentEvent<Review>> heartbeats = Flux.interval(Duration.ZERO, streamHeartbeat)
+                .map(tick -> ServerSentEvent.<Review>builder().comment("heartbeat").build());
+
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(Flux.merge(reviews, heartbeats), new ParameterizedTypeReference<ServerSentEvent<Review>>() {
+                });
+    }
+
+    private void publish(Review review) {
+        //saves run concurrently - retry while another thread is emitting
+        reviewSink.emitNext(review, (signalType, result) -> result == Sinks.EmitResult.FAIL_NON_SERIALIZED);
+    }
+
     private void validate(Review review) {
 
         Set<ConstraintViolation<Review>> constraintViolations = validator.validate(review);
@@ -55,19 +109,101 @@ public class ReviewHandler {
     public Mono<ServerResponse> getReviews(@NotNull ServerRequest request) {
 
         Optional<String> movieInfoId = request.queryParam("movieInfoId");
-
-        if (movieInfoId.isPresent()) {
-            Flux<Review> reviewsByMovieInfoId = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get())).log();
-            return buildReviewsResponse(reviewsByMovieInfoId);
+        Optional<String> movieInfoIds = request.queryParam("movieInfoIds");
+
+        if (movieInfoIds.isPresent()) {
+            List<Long> ids = Arrays.stream(movieInfoIds.get().split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(id -> movieInfoId(id, "movieInfoIds"))
+                    .distinct()
+                    .collect(Collectors.toList());
+            Flux<Review> reviewsByMovieInfoIds = reviewReactiveRepository.findReviewsByMovieInfoIdInOrderByMovieInfoId(ids)
+                    .transform(tracing.flux("getReviewsByMovieInfoIds"));
+            return buildReviewsResponse(request, reviewsByMovieInfoIds);
+
+        } else if (movieInfoId.isPresent() && (request.queryParam("limit").isPresent() || request.queryParam("sort").isPresent()
+                || request.queryParam("cursor").isPresent())) {
+            return getReviewPage(request, movieInfoId(movieInfoId.get(), "movieInfoId"));
+
+        } else if (movieInfoId.isPresent()) {
+            Flux<Review> reviewsByMovieInfoId = reviewReactiveRepository.findReviewsByMovieInfoId(movieInfoId(movieInfoId.get(), "movieInfoId"))
+                    .transform(tracing.flux("getReviewsByMovieInfoId"));
+            return buildReviewsResponse(request, reviewsByMovieInfoId);
 
         } else {
-            Flux<Review> reviews = reviewReactiveRepository.findAll().log();
-            return buildReviewsResponse(reviews);
+            Flux<Review> reviews = reviewReactiveRepository.findAll()
+                    .transform(tracing.flux("getAllReviews"));
+            return buildReviewsResponse(request, reviews);
+        }
+    }
+
+    //?movieInfoId=&limit=&sort=newest|rating&cursor= - one page, sorted and limited in Mongo. one review more than the
+    //limit is read to know whether there is a next page, its cursor goes into X-Next-Cursor
+    private Mono<ServerResponse> getReviewPage(ServerRequest request, Long movieInfoId) {
+
+        ReviewSort sort = request.queryParam("sort").map(ReviewSort::from).orElse(ReviewSort.NEWEST);
+        ReviewCursor after = request.queryParam("cursor").map(cursor -> ReviewCursor.decode(cursor, sort)).orElse(null);
+        Optional<Integer> limit = request.queryParam("limit").map(this::pageLimit);
+
+        if (limit.isEmpty()) {
+            return buildReviewsResponse(request, reviewReactiveRepository.findReviewPage(movieInfoId, sort, after, 0)
+                    .transform(tracing.flux("getReviewPage")));
+        }
+        return reviewReactiveRepository.findReviewPage(movieInfoId, sort, after, limit.get() + 1)
+                .transform(tracing.flux("getReviewPage"))
+                .collectList()
+                .flatMap(reviews -> {
+                    ServerResponse.BodyBuilder response = ServerResponse.ok()
+                            .contentType(negotiateContentType(request));
+                    if (reviews.size() > limit.get()) {
+                        reviews = reviews.subList(0, limit.get());
+                        response.header(NEXT_CURSOR_HEADER, ReviewCursor.after(reviews.get(reviews.size() - 1), sort).encode());
+                    }
+                    return response.bodyValue(reviews);
+                });
+    }
+
+    //movieInfoIds are numbers - anything else is the caller's mistake, not a 500
+    private static Long movieInfoId(String id, String parameter) {
+        try {
+            return Long.valueOf(id.trim());
+        } catch (NumberFormatException ex) {
+            throw new ReviewDataException("review." + parameter + " : must be a number, was " + id);
         }
     }
 
-    private @NotNull Mono<ServerResponse> buildReviewsResponse(Flux<Review> reviewsByMovieInfoId) {
-        return ServerResponse.ok().body(reviewsByMovieInfoId, Review.class);
+    private int pageLimit(String limit) {
+        try {
+            int value = Integer.parseInt(limit.trim());
+            if (value >= 1 && value <= maxPageLimit) {
+                return value;
+            }
+        } catch (NumberFormatException ex) {
+            //same message as out of range
+        }
+        throw new ReviewDataException("review.limit : must be between 1 and " + maxPageLimit);
+    }
+
+    private @NotNull Mono<ServerResponse> buildReviewsResponse(ServerRequest request, Flux<Review> reviewsByMovieInfoId) {
+        return ServerResponse.ok()
+                .contentType(negotiateContentType(request))
+                .body(reviewsByMovieInfoId, Review.class);
+    }
+
+    //functional endpoints don't negotiate on their own - Smile when the caller prefers it (movies-service), JSON otherwise
+    private static MediaType negotiateContentType(ServerRequest request) {
+        List<MediaType> accepted = new ArrayList<>(request.headers().accept());
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType mediaType : accepted) {
+            if (mediaType.equalsTypeAndSubtype(SMILE)) {
+                return SMILE;
+            }
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return MediaType.APPLICATION_JSON;
+            }
+        }
+        return MediaType.APPLICATION_JSON;
     }
 
     public Mono<ServerResponse> updateReview(@NotNull ServerRequest request) {
@@ -85,6 +221,7 @@ public class ReviewHandler {
                             return review;
                         })
                         .flatMap(reviewReactiveRepository::save)
+                        .doOnNext(this::publish)
                         .flatMap(savedReview -> ServerResponse.ok().bodyValue(savedReview))
                 );
               //  .switchIfEmpty(ServerResponse.notFound().build()); //2nd approach to throw 404 not found
@@ -0,0 +1,12 @@
+package com.reactivespring.repo;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.util.ReviewCursor;
+import reactor.core.publisher.Flux;
+
+public interface ReviewReactiveRepositoryCustom {
+
+    //keyset page: sorted and limited by the query, continues after the cursor (null - first page). limit 0 - no limit
+    Flux<Review> findReviewPage(Long movieInfoId, ReviewSort sort, ReviewCursor after, int limit);
+}
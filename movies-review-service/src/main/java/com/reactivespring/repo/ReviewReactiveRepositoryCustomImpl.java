@@ -0,0 +1,60 @@
+package com.reactivespring.repo;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.util.ReviewCursor;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+
+//served by the compound indexes on Review - {movieInfoId, _id} for NEWEST, {movieInfoId, rating, _id} for RATING
+@RequiredArgsConstructor
+public class ReviewReactiveRepositoryCustomImpl implements ReviewReactiveRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Override
+    public Flux<Review> findReviewPage(Long movieInfoId, ReviewSort sort, ReviewCursor after, int limit) {
+        Criteria criteria = Criteria.where("movieInfoId").is(movieInfoId);
+        if (after != null) {
+            criteria = criteria.andOperator(after(sort, after));
+        }
+        Query query = Query.query(criteria)
+                .with(sort == ReviewSort.RATING
+                        ? Sort.by(Sort.Direction.DESC, "rating", "reviewId")
+                        : Sort.by(Sort.Direction.DESC, "reviewId"))
+                .limit(limit);
+        return reactiveMongoTemplate.find(query, Review.class);
+    }
+
+    //everything that sorts after the cursor, descending. a missing rating sorts below any number
+    private static Criteria after(ReviewSort sort, ReviewCursor cursor) {
+        Criteria sameKeyOlderId = olderId(cursor.getReviewId());
+        if (sort == ReviewSort.NEWEST) {
+            return sameKeyOlderId;
+        }
+        if (cursor.getRating() == null) {
+            return new Criteria().andOperator(Criteria.where("rating").is(null), sameKeyOlderId);
+        }
+        return new Criteria().orOperator(
+                Criteria.where("rating").lt(cursor.getRating()),
+                Criteria.where("rating").is(null),
+                new Criteria().andOperator(Criteria.where("rating").is(cursor.getRating()), sameKeyOlderId));
+    }
+
+    //generated ids are ObjectIds, given ones (e.g. "1") strings. descending, _id sorts ObjectIds before strings, but
+    //$lt only matches values of its own type - after an ObjectId the string ids are all still to come
+    private static Criteria olderId(String reviewId) {
+        if (!ObjectId.isValid(reviewId)) {
+            return Criteria.where("reviewId").lt(reviewId);
+        }
+        return new Criteria().orOperator(
+                Criteria.where("reviewId").lt(new ObjectId(reviewId)),
+                Criteria.where("reviewId").type(JsonSchemaObject.Type.stringType()));
+    }
+}
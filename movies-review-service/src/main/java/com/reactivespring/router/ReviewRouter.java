@@ -19,6 +19,7 @@ public class ReviewRouter {
                 .nest(path("/v1/reviews"), builder ->
                     builder.POST("", request -> reviewHandler.addReview(request))
                             .GET("", request -> reviewHandler.getReviews(request))
+                            .GET("/stream", request -> reviewHandler.streamReviews(request))
                             .PUT("/{id}", request -> reviewHandler.updateReview(request))
                             .DELETE("/{id}", request -> reviewHandler.deleteReview(request))
                 )
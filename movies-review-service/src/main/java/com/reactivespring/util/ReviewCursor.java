@@ -0,0 +1,40 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSort;
+import com.reactivespring.exception.ReviewDataException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+//position after the last review of a page: sort key + reviewId. opaque to callers (base64url), only valid for the
+//sort it was created with
+@Value
+public class ReviewCursor {
+
+    ReviewSort sort;
+    Double rating; //RATING only, null when the review has no rating
+    String reviewId;
+
+    public static ReviewCursor after(Review review, ReviewSort sort) {
+        return new ReviewCursor(sort, sort == ReviewSort.RATING ? review.getRating() : null, review.getReviewId());
+    }
+
+    public String encode() {
+        String value = sort.name() + ":" + (rating == null ? "" : rating) + ":" + reviewId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ReviewCursor decode(String cursor, ReviewSort sort) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 3);
+            if (parts.length != 3 || parts[2].isEmpty() || ReviewSort.valueOf(parts[0]) != sort) {
+                throw new IllegalArgumentException(cursor);
+            }
+            return new ReviewCursor(sort, parts[1].isEmpty() ? null : Double.valueOf(parts[1]), parts[2]);
+        } catch (IllegalArgumentException ex) {
+            throw new ReviewDataException("review.cursor : invalid cursor for sort " + sort.name().toLowerCase());
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repo.ReviewReactiveRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,7 +13,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -162,4 +168,88 @@ public class ReviewsIntgTest {
                 .expectBodyList(Review.class)
                 .hasSize(2);
     }
+
+    @Test
+    void getReviewPages_byRating() {
+        //given
+        reviewReactiveRepository.saveAll(List.of(
+                new Review(null, 3L, "Good", 7.0),
+                new Review(null, 3L, "Best", 9.5),
+                new Review(null, 3L, "Great", 9.0),
+                new Review(null, 3L, "Unrated", null),
+                new Review(null, 3L, "Also great", 9.0)))
+                .blockLast();
+
+        //when - first page
+        var firstPage = webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", 3)
+                        .queryParam("sort", "rating")
+                        .queryParam("limit", 3)
+                        .build())
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .returnResult();
+        String cursor = firstPage.getResponseHeaders().getFirst(ReviewHandler.NEXT_CURSOR_HEADER);
+
+        //then - the rest, no review twice and no further page
+        var secondPage = webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", 3)
+                        .queryParam("sort", "rating")
+                        .queryParam("limit", 3)
+                        .queryParam("cursor", cursor)
+                        .build())
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .returnResult();
+
+        assertNotNull(cursor);
+        assertEquals(List.of(9.5, 9.0, 9.0), firstPage.getResponseBody().stream().map(Review::getRating).collect(Collectors.toList()));
+        assertEquals(Arrays.asList(7.0, null), secondPage.getResponseBody().stream().map(Review::getRating).collect(Collectors.toList()));
+    }
+
+    @Test
+    void getReviewPages_mixedIdTypes() {
+        //given - given string ids next to generated ObjectIds, which sort first
+        reviewReactiveRepository.saveAll(List.of(
+                new Review("x1", 4L, "Given 1", 7.0),
+                new Review("x2", 4L, "Given 2", 7.0),
+                new Review(null, 4L, "Generated 1", 7.0),
+                new Review(null, 4L, "Generated 2", 7.0)))
+                .blockLast();
+
+        for (String sort : List.of("newest", "rating")) {
+            //when - pages of one, through all of them
+            List<String> names = new ArrayList<>();
+            String cursor = null;
+            do {
+                String pageCursor = cursor;
+                var page = webTestClient
+                        .get()
+                        .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                                .queryParam("movieInfoId", 4)
+                                .queryParam("sort", sort)
+                                .queryParam("limit", 1)
+                                .queryParamIfPresent("cursor", Optional.ofNullable(pageCursor))
+                                .build())
+                        .exchange()
+                        .expectStatus().is2xxSuccessful()
+                        .expectBodyList(Review.class)
+                        .returnResult();
+                page.getResponseBody().forEach(review -> names.add(review.getComment()));
+                cursor = page.getResponseHeaders().getFirst(ReviewHandler.NEXT_CURSOR_HEADER);
+            } while (cursor != null && names.size() < 10);
+
+            //then - every review once, the ObjectIds first
+            assertEquals(4, names.size(), sort + " " + names);
+            assertEquals(Set.of("Generated 1", "Generated 2"), Set.copyOf(names.subList(0, 2)), sort + " " + names);
+            assertEquals(List.of("Given 2", "Given 1"), names.subList(2, 4), sort + " " + names);
+        }
+    }
 }
@@ -1,21 +1,31 @@
 package com.reactivespring.routes;
 
+import com.reactivespring.config.DeadlineConfig;
+import com.reactivespring.config.TracingConfig;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSort;
 import com.reactivespring.exeptionhandler.GlobalErrorHandler;
 import com.reactivespring.handler.ReviewHandler;
 import com.reactivespring.repo.ReviewReactiveRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.util.Deadline;
+import com.reactivespring.util.ReviewCursor;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -26,7 +36,9 @@ import static org.mockito.Mockito.when;
 @ContextConfiguration(classes = {
         ReviewRouter.class,
         ReviewHandler.class,
-        GlobalErrorHandler.class
+        GlobalErrorHandler.class,
+        TracingConfig.class,
+        DeadlineConfig.class
 })
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
@@ -122,6 +134,62 @@ public class ReviewsUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void streamReviews() {
+        //given
+        when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0, Review.class)));
+
+        var stream = webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=1")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Review.class)
+                .getResponseBody()
+                .filter(Objects::nonNull); //heartbeats
+
+        //when + then - only the reviews of movie 1, as they are saved
+        StepVerifier.create(stream)
+                .then(() -> {
+                    addReview(new Review("r1", 2L, "Other Movie", 5.0));
+                    addReview(new Review("r2", 1L, "Awesome Movie", 9.0));
+                })
+                .assertNext(review -> assertEquals("r2", review.getReviewId()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void streamReviews_missingMovieInfoId() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void streamReviews_movieInfoIdNotANumber() {
+        webTestClient
+                .get()
+                .uri(REVIEWS_URL + "/stream?movieInfoId=abc")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must be a number, was abc");
+    }
+
+    private void addReview(Review review) {
+        webTestClient
+                .post()
+                .uri(REVIEWS_URL)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
     @Test
     void deleteReview() {
         //given
@@ -163,6 +231,189 @@ public class ReviewsUnitTest {
                 .hasSize(1);
     }
 
+    @Test
+    void getAllReviewsByMovieInfoIds() {
+        //given
+        var reviewsList = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Awesome Movie1", 9.0),
+                new Review("3", 2L, "Excellent Movie", 8.0));
+
+        //when
+        when(reviewReactiveRepository.findReviewsByMovieInfoIdInOrderByMovieInfoId(List.of(1L, 2L)))
+                .thenReturn(Flux.fromIterable(reviewsList));
+
+        //then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoIds", "1,2,1")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(3);
+    }
+
+    @Test
+    void getAllReviewsByMovieInfoIds_notANumber() {
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoIds", "1,abc")
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoIds : must be a number, was abc");
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "abc")
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.movieInfoId : must be a number, was abc");
+    }
+
+    @Test
+    void getReviewsByMovieInfoId_smile() {
+        //given
+        var smile = MediaType.parseMediaType("application/x-jackson-smile");
+        var reviewsList = List.of(
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Awesome Movie1", 9.0));
+
+        //when
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenReturn(Flux.fromIterable(reviewsList));
+
+        //then - movies-service asks for Smile with JSON as fallback
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .build())
+                .accept(smile, MediaType.parseMediaType("application/json;q=0.9"))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().contentType(smile)
+                .expectBodyList(Review.class)
+                .isEqualTo(reviewsList);
+    }
+
+    @Test
+    void getReviews_deadlineExceeded() {
+        //when - a query that never finishes
+        when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenReturn(Flux.never());
+
+        //then - movies-service only gave us 200ms
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .build())
+                .header(Deadline.HEADER, "200")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @Test
+    void getReviewPage() {
+        //given - the repository returns limit + 1 reviews when there is a next page
+        var reviewsList = List.of(
+                new Review("3", 1L, "Best Movie", 9.5),
+                new Review("1", 1L, "Awesome Movie", 9.0),
+                new Review("2", 1L, "Good Movie", 7.0));
+
+        //when
+        when(reviewReactiveRepository.findReviewPage(1L, ReviewSort.RATING, null, 3))
+                .thenReturn(Flux.fromIterable(reviewsList));
+
+        //then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("limit", "2")
+                        .queryParam("sort", "rating")
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().valueEquals(ReviewHandler.NEXT_CURSOR_HEADER,
+                        ReviewCursor.after(reviewsList.get(1), ReviewSort.RATING).encode())
+                .expectBodyList(Review.class)
+                .isEqualTo(reviewsList.subList(0, 2));
+    }
+
+    @Test
+    void getReviewPage_lastPage() {
+        //given
+        var cursor = new ReviewCursor(ReviewSort.NEWEST, null, "3");
+
+        //when
+        when(reviewReactiveRepository.findReviewPage(1L, ReviewSort.NEWEST, cursor, 3))
+                .thenReturn(Flux.just(new Review("2", 1L, "Good Movie", 7.0)));
+
+        //then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("limit", "2")
+                        .queryParam("cursor", cursor.encode())
+                        .build())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader().doesNotExist(ReviewHandler.NEXT_CURSOR_HEADER)
+                .expectBodyList(Review.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getReviewPage_validation() {
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("sort", "oldest")
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.sort : must be one of newest, rating");
+
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("limit", "1000")
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.limit : must be between 1 and 100");
+
+        //a cursor only continues the sort it was created for
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path(REVIEWS_URL)
+                        .queryParam("movieInfoId", "1")
+                        .queryParam("sort", "rating")
+                        .queryParam("cursor", new ReviewCursor(ReviewSort.NEWEST, null, "3").encode())
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     void addReview_validation() {
         //given
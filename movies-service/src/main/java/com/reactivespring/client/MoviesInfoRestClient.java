@@ -3,58 +3,281 @@ package com.reactivespring.client;
 import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.Hedger;
+import com.reactivespring.util.MovieFieldset;
+import com.reactivespring.util.ReactiveNearCache;
+import com.reactivespring.util.ReactiveTracing;
+import com.reactivespring.util.RequestCoalescer;
 import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.StaleFallback;
+import com.reactivespring.util.Versioned;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class MoviesInfoRestClient {
 
+    private static final String CLIENT_NAME = "moviesInfo";
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfo>> MOVIE_INFO_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Qualifier("moviesInfoWebClient")
     private final WebClient webClient;
+    private final RequestCoalescer<MovieInfo> movieInfoCoalescer;
+    private final MeterRegistry meterRegistry;
+    private final RetryUtil retryUtil;
+    @Qualifier("moviesInfoCircuitBreaker")
+    private final CircuitBreaker circuitBreaker;
+    @Qualifier("moviesInfoBulkhead")
+    private final Bulkhead bulkhead;
+    @Qualifier("moviesInfoHedger")
+    private final Hedger hedger;
+    private final ReactiveTracing tracing;
+    private final StaleFallback<MovieInfo> movieInfoStaleFallback;
 
     @Value("${restClient.moviesInfoUrl}")
     private String movieInfoUrl;
 
+    @Value("${restClient.stream.idleTimeout:45s}")
+    private Duration streamIdleTimeout;
+
+    @Value("${restClient.cache.enabled:true}")
+    private boolean cacheEnabled;
+
+    @Value("${restClient.cache.maxSize:10000}")
+    private long cacheMaxSize;
+
+    @Value("${restClient.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${restClient.cache.refreshAfter:1m}")
+    private Duration cacheRefreshAfter;
+
+    @Value("${restClient.cache.negativeTtl:10s}")
+    private Duration cacheNegativeTtl;
+
+    @Value("${restClient.cache.loadTimeout:5s}")
+    private Duration cacheLoadTimeout;
+
+    private ReactiveNearCache<Versioned<MovieInfo>> movieInfoCache;
+
+    @PostConstruct
+    void initMovieInfoCache() {
+        if (cacheEnabled) {
+            movieInfoCache = new ReactiveNearCache<>("movieInfo", cacheMaxSize, cacheTtl, cacheRefreshAfter, cacheNegativeTtl, cacheLoadTimeout,
+                    movieId -> fetchVersionedMovieInfo(movieId, null)
+                            .map(Optional::of)
+                            .onErrorResume(MoviesInfoRestClient::isNotFound, ex -> Mono.just(Optional.empty())),
+                    (movieId, cached) -> fetchVersionedMovieInfo(movieId, cached.orElse(null))
+                            .map(Optional::of)
+                            .onErrorResume(MoviesInfoRestClient::isNotFound, ex -> Mono.just(Optional.empty())),
+                    meterRegistry);
+        }
+    }
+
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
 
+        if (movieInfoCache == null) {
+            return movieInfoStaleFallback.withFallback(movieId, fetchMovieInfo(movieId, null));
+        }
+        return movieInfoStaleFallback.withFallback(movieId, movieInfoCache.get(movieId)
+                .map(Versioned::getValue)
+                .switchIfEmpty(Mono.error(() -> new MoviesInfoClientException(
+                        notFoundMessage(movieId), HttpStatus.NOT_FOUND.value()))));
+    }
+
+    //?fields= lookup: a MovieInfo already in the near cache is projected here, otherwise the info service projects it in
+    //Mongo. projections don't go into the near cache or the last-known-good store, those keep whole documents
+    public Mono<MovieInfo> retrieveMovieInfo(String movieId, MovieFieldset fieldset) {
+
+        if (fieldset.isWholeMovieInfo()) {
+            return retrieveMovieInfo(movieId);
+        }
+        Mono<MovieInfo> projected = fetchMovieInfo(movieId, fieldset.getMovieInfoFields());
+        if (movieInfoCache == null) {
+            return projected;
+        }
+        return movieInfoCache.getIfPresent(movieId)
+                .flatMap(cached -> cached
+                        .map(versioned -> Mono.just(fieldset.project(versioned.getValue())))
+                        .orElseGet(() -> Mono.error(new MoviesInfoClientException(notFoundMessage(movieId), HttpStatus.NOT_FOUND.value()))))
+                .switchIfEmpty(projected);
+    }
+
+    //fields null - the whole MovieInfo
+    private Mono<MovieInfo> fetchMovieInfo(String movieId, Set<String> fields) {
+
 //        RetryBackoffSpec retrySpec = Retry.fixedDelay(3, Duration.ofSeconds(1))
 //                .filter(ex -> ex instanceof MoviesInfoServerException)
 //                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) ->
 //                        Exceptions.propagate(retrySignal.failure())
 //                );
 
+        var projection = fields == null ? null : String.join(",", fields);
+        var url = movieInfoUrl.concat(projection == null ? "/{id}" : "/{id}?fields={fields}");
+        //hedging, breaker and bulkhead apply per attempt - every hedge and every retry is guarded on its own
+        var key = "id:" + movieId + (projection == null ? "" : "?fields=" + projection);
+        return movieInfoCoalescer.coalesce(key, () -> hedger.hedge(() -> webClient
+                .get()
+                .uri(url, movieId, projection)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse,
+                        notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToMono(MovieInfo.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)) //per attempt, open circuit fails fast and is not retried
+                .transformDeferred(BulkheadOperator.of(bulkhead)))
+                .doOnSuccess(movieInfo -> retryUtil.recordSuccess(CLIENT_NAME))
+                //.retry(3) //any time there is a failure in this retry 3 times
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME)))
+                .transform(tracing.mono("fetchMovieInfo"));
+    }
+
+    //whole MovieInfo for the near cache, with its ETag. a refresh sends If-None-Match and a 304 keeps the cached copy,
+    //so an unchanged MovieInfo costs a header round trip instead of a body. not coalesced - Caffeine already runs a
+    //single load / refresh per key
+    private Mono<Versioned<MovieInfo>> fetchVersionedMovieInfo(String movieId, Versioned<MovieInfo> cached) {
+
+        var eTag = cached == null ? null : cached.getETag();
+        return hedger.hedge(() -> webClient
+                .get()
+                .uri(movieInfoUrl.concat("/{id}"), movieId)
+                .headers(headers -> {
+                    if (eTag != null) {
+                        headers.setIfNoneMatch(eTag);
+                    }
+                })
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse,
+                        notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .toEntity(MovieInfo.class)
+                .map(entity -> entity.getStatusCode() == HttpStatus.NOT_MODIFIED
+                        ? cached
+                        : new Versioned<>(entity.getBody(), entity.getHeaders().getETag()))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)) //per attempt, open circuit fails fast and is not retried
+                .transformDeferred(BulkheadOperator.of(bulkhead)))
+                .doOnSuccess(movieInfo -> retryUtil.recordSuccess(CLIENT_NAME))
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME))
+                .transform(tracing.mono(eTag == null ? "fetchMovieInfo" : "revalidateMovieInfo"));
+    }
+
+    //raw JSON of the MovieInfo for the passthrough aggregation - only the status is looked at, the body is never parsed.
+    //the buffers are joined (composite, no copy) so a retry can't replay a half written body
+    public Mono<DataBuffer> retrieveMovieInfoRaw(String movieId) {
+
         var url = movieInfoUrl.concat("/{id}");
         return webClient
                 .get()
                 .uri(url, movieId)
+                .accept(MediaType.APPLICATION_JSON) //spliced into a JSON response, never Smile
                 .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
-                    log.info("Status code is : {}", clientResponse.statusCode().value());
-                    if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
-                        return Mono.error(new MoviesInfoClientException(
-                                "There is no MovieInfo available for the passed id : " + movieId,
-                                clientResponse.statusCode().value()));
-                    }
-                    return clientResponse.bodyToMono(String.class)
-                            .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(responseMessage, clientResponse.statusCode().value()
-                            )));
-                })
-                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
-                    log.info("Status code is : {}", clientResponse.statusCode().value());
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse,
+                        notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToFlux(DataBuffer.class)
+                .as(DataBufferUtils::join)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .doOnSuccess(movieInfo -> retryUtil.recordSuccess(CLIENT_NAME))
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME))
+                .transform(tracing.mono("fetchMovieInfoRaw"));
+    }
 
-                    return clientResponse.bodyToMono(String.class)
-                            .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException("Server Exception in MoviesInfoService " + responseMessage)));
-                })
-                .bodyToMono(MovieInfo.class)
-                //.retry(3) //any time there is a failure in this retry 3 times
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+    //the MovieInfo each time it changes, pushed by movies-info-service as server-sent events. one long lived call,
+    //shared per movie by MovieFeed - not retried, hedged or guarded by the breaker / bulkhead, which are for
+    //request / response. the read timeout is stretched to idleTimeout, the upstream heartbeats come well within it
+    public Flux<MovieInfo> streamMovieInfo(String movieId) {
+
+        return webClient
+                .get()
+                .uri(movieInfoUrl.concat("/{id}/stream"), movieId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .httpRequest(request -> request.<HttpClientRequest>getNativeRequest().responseTimeout(streamIdleTimeout))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse,
+                        notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToFlux(MOVIE_INFO_EVENT)
+                .filter(event -> event.data() != null) //heartbeats
+                .map(ServerSentEvent::data);
+    }
+
+    public Flux<MovieInfo> retrieveMovieInfos(List<String> movieIds) {
+
+        //one $in lookup in movies-info-service for the whole batch
+        String uri = UriComponentsBuilder.fromUriString(movieInfoUrl)
+                .queryParam("ids", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUriString();
+
+        return movieInfoCoalescer.coalesceMany("ids:" + String.join(",", movieIds), () -> webClient
+                .get()
+                .uri(uri)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse,
+                        "There is no MovieInfo available for the passed ids : " + movieIds))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToFlux(MovieInfo.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)) //per attempt, open circuit fails fast and is not retried
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .doOnComplete(() -> retryUtil.recordSuccess(CLIENT_NAME))
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME)))
+                .transform(tracing.flux("retrieveMovieInfos"));
+    }
+
+    private Mono<? extends Throwable> handle4xxError(ClientResponse clientResponse, String notFoundMessage) {
+        log.info("Status code is : {}", clientResponse.statusCode().value());
+        if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+            return Mono.error(new MoviesInfoClientException(notFoundMessage, clientResponse.statusCode().value()));
+        }
+        return clientResponse.bodyToMono(String.class)
+                .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(responseMessage, clientResponse.statusCode().value()
+                )));
+    }
+
+    private Mono<? extends Throwable> handle5xxError(ClientResponse clientResponse) {
+        log.info("Status code is : {}", clientResponse.statusCode().value());
+
+        return clientResponse.bodyToMono(String.class)
+                .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException("Server Exception in MoviesInfoService " + responseMessage)));
+    }
+
+    private static String notFoundMessage(String movieId) {
+        return "There is no MovieInfo available for the passed id : " + movieId;
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        return ex instanceof MoviesInfoClientException
+                && Integer.valueOf(HttpStatus.NOT_FOUND.value()).equals(((MoviesInfoClientException) ex).getStatusCode());
     }
 }
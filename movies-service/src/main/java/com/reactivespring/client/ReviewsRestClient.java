@@ -1,59 +1,232 @@
 package com.reactivespring.client;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewPage;
+import com.reactivespring.exception.MoviesRequestException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.util.Hedger;
+import com.reactivespring.util.ReactiveTracing;
+import com.reactivespring.util.RequestCoalescer;
 import com.reactivespring.util.RetryUtil;
+import com.reactivespring.util.StaleFallback;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class ReviewsRestClient {
 
+    private static final String CLIENT_NAME = "reviews";
+    private static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final ParameterizedTypeReference<ServerSentEvent<Review>> REVIEW_EVENT =
+            new ParameterizedTypeReference<>() {
+            };
+
+    @Qualifier("reviewsWebClient")
     private final WebClient webClient;
+    private final RequestCoalescer<Review> reviewsCoalescer;
+    private final RetryUtil retryUtil;
+    @Qualifier("reviewsCircuitBreaker")
+    private final CircuitBreaker circuitBreaker;
+    @Qualifier("reviewsBulkhead")
+    private final Bulkhead bulkhead;
+    @Qualifier("reviewsHedger")
+    private final Hedger hedger;
+    private final ReactiveTracing tracing;
+    private final StaleFallback<List<Review>> reviewsStaleFallback;
 
     @Value("${restClient.reviewsUrl}")
     private String reviewsUrl;
 
+    @Value("${restClient.stream.idleTimeout:45s}")
+    private Duration streamIdleTimeout;
+
+    //the reviews as they arrive, nothing is buffered - /{id}/stream writes each one as soon as it is decoded
     public Flux<Review> retrieveReviews(String movieId) {
 
-        //movieInfoId
-        String uri = UriComponentsBuilder.fromUriString(reviewsUrl)
-                .queryParam("movieInfoId", movieId)
+        return reviewsCoalescer.coalesceMany("id:" + movieId, () -> retrieveReviewsFrom(reviewsUri(movieId),
+                        notFoundMessage(movieId), true))
+                .transform(tracing.flux("retrieveReviews"));
+    }
+
+    //the whole list, for the aggregated Movie - that's the one the last-known-good store is kept for, it needs the
+    //complete response anyway
+    public Mono<List<Review>> retrieveReviewList(String movieId) {
+
+        Mono<List<Review>> reviews = reviewsCoalescer.coalesceMany("id:" + movieId, () -> retrieveReviewsFrom(reviewsUri(movieId),
+                        notFoundMessage(movieId), true))
+                .collectList();
+
+        return reviewsStaleFallback.withFallback(movieId, reviews)
+                .transform(tracing.mono("retrieveReviewList"));
+    }
+
+    private String reviewsUri(String movieId) {
+        return reviewsUri(movieId, UnaryOperator.identity());
+    }
+
+    //?movieInfoId=, plus what the call adds to it (a path, page parameters)
+    private String reviewsUri(String movieId, UnaryOperator<UriComponentsBuilder> customizer) {
+        return customizer.apply(UriComponentsBuilder.fromUriString(reviewsUrl)
+                        .queryParam("movieInfoId", movieId))
                 .buildAndExpand()
                 .toUriString();
+    }
+
+    private static String notFoundMessage(String movieId) {
+        return "There are no Reviews available for the passed id : " + movieId;
+    }
+
+    //raw JSON array of the reviews for the passthrough aggregation, see MoviesInfoRestClient.retrieveMovieInfoRaw
+    public Mono<DataBuffer> retrieveReviewsRaw(String movieId) {
+
+        return webClient
+                .get()
+                .uri(reviewsUri(movieId))
+                .accept(MediaType.APPLICATION_JSON) //spliced into a JSON response, never Smile
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse, notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToFlux(DataBuffer.class)
+                .as(DataBufferUtils::join)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .doOnSuccess(reviews -> retryUtil.recordSuccess(CLIENT_NAME))
+                .onErrorResume(ReviewsRestClient::isNotFound, ex -> Mono.fromSupplier(
+                        () -> DefaultDataBufferFactory.sharedInstance.wrap(EMPTY_ARRAY)))
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME))
+                .transform(tracing.mono("retrieveReviewsRaw"));
+    }
+
+    //sorted / limited page of a movie's reviews, the review service runs it as a keyset query and passes the cursor
+    //of the next page in X-Next-Cursor. pages aren't coalesced, cached or hedged - the parameters make them rarely shared
+    public Mono<ReviewPage> retrieveReviewPage(String movieId, Integer limit, String sort, String cursor) {
+
+        String uri = reviewsUri(movieId, builder -> builder
+                .queryParamIfPresent("limit", Optional.ofNullable(limit))
+                .queryParamIfPresent("sort", Optional.ofNullable(sort))
+                .queryParamIfPresent("cursor", Optional.ofNullable(cursor)));
 
         return webClient
                 .get()
                 .uri(uri)
                 .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
-                    log.info("Status code is : {}", clientResponse.statusCode().value());
-                    if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
-
-                        return Mono.empty();
-                    }
-                    return clientResponse.bodyToMono(String.class)
-                            .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage)));
-                })
-                .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
-
-                    log.info("Status code is : {}", clientResponse.statusCode().value());
-
-                    return clientResponse.bodyToMono(String.class)
-                            .flatMap(responseMessage -> Mono.error(new ReviewsServerException("Server Exception in ReviewsService " + responseMessage)));
-                })
+                //a bad cursor / sort is the caller's mistake, not the review service's
+                .onStatus(HttpStatus.BAD_REQUEST::equals, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty("Invalid review page request")
+                        .map(MoviesRequestException::new))
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse, notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .toEntityList(Review.class)
+                .map(entity -> new ReviewPage(entity.getBody(), entity.getHeaders().getFirst(NEXT_CURSOR_HEADER)))
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .doOnSuccess(page -> retryUtil.recordSuccess(CLIENT_NAME))
+                .onErrorResume(ReviewsRestClient::isNotFound, ex -> Mono.just(new ReviewPage(List.of(), null)))
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME))
+                .transform(tracing.mono("retrieveReviewPage"));
+    }
+
+    //new and updated reviews of the movie, pushed by the review service as server-sent events - see
+    //MoviesInfoRestClient.streamMovieInfo
+    public Flux<Review> streamReviews(String movieId) {
+
+        return webClient
+                .get()
+                .uri(reviewsUri(movieId, builder -> builder.path("/stream")))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .httpRequest(request -> request.<HttpClientRequest>getNativeRequest().responseTimeout(streamIdleTimeout))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse, notFoundMessage(movieId)))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
+                .bodyToFlux(REVIEW_EVENT)
+                .filter(event -> event.data() != null) //heartbeats
+                .map(ServerSentEvent::data);
+    }
+
+    public Flux<Review> retrieveReviews(List<String> movieIds) {
+
+        //one $in lookup in movies-review-service for the whole batch, reviews come back ordered by movieInfoId
+        String uri = UriComponentsBuilder.fromUriString(reviewsUrl)
+                .queryParam("movieInfoIds", String.join(",", movieIds))
+                .buildAndExpand()
+                .toUriString();
+
+        return reviewsCoalescer.coalesceMany("ids:" + String.join(",", movieIds),
+                () -> retrieveReviewsFrom(uri, "There are no Reviews available for the passed ids : " + movieIds, false))
+                .transform(tracing.flux("retrieveReviewsBatch"));
+    }
+
+    //batches are not hedged - a duplicate of a large $in query costs more than the tail latency it saves
+    private Flux<Review> retrieveReviewsFrom(String uri, String notFoundMessage, boolean hedged) {
+
+        Supplier<Flux<Review>> attempt = () -> webClient
+                .get()
+                .uri(uri)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> handle4xxError(clientResponse, notFoundMessage))
+                .onStatus(HttpStatus::is5xxServerError, this::handle5xxError)
                 .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec())
-                .log();
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)) //per attempt, open circuit fails fast and is not retried
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+
+        return (hedged ? hedger.hedgeMany(attempt) : Flux.defer(attempt))
+                .doOnComplete(() -> retryUtil.recordSuccess(CLIENT_NAME))
+                .onErrorResume(ReviewsRestClient::isNotFound, ex -> Flux.empty())
+                .retryWhen(retryUtil.retrySpec(CLIENT_NAME));
+    }
+
+    private Mono<? extends Throwable> handle4xxError(ClientResponse clientResponse, String notFoundMessage) {
+        log.info("Status code is : {}", clientResponse.statusCode().value());
+        if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
+            //Mono.empty() here would make WebClient decode the 404 body - signal it and turn it into an empty result in the caller
+            return clientResponse.releaseBody()
+                    .then(Mono.error(new ReviewsClientException(notFoundMessage, clientResponse.statusCode().value())));
+        }
+        return clientResponse.bodyToMono(String.class)
+                .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage)));
+    }
+
+    private Mono<? extends Throwable> handle5xxError(ClientResponse clientResponse) {
+
+        log.info("Status code is : {}", clientResponse.statusCode().value());
+
+        return clientResponse.bodyToMono(String.class)
+                .flatMap(responseMessage -> Mono.error(new ReviewsServerException("Server Exception in ReviewsService " + responseMessage)));
+    }
+
+    private static boolean isNotFound(Throwable ex) {
+        return ex instanceof ReviewsClientException
+                && Integer.valueOf(HttpStatus.NOT_FOUND.value()).equals(((ReviewsClientException) ex).getStatusCode());
     }
 }
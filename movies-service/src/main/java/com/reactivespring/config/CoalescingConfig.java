@@ -0,0 +1,31 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.RequestCoalescer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CoalescingConfig {
+
+    @Value("${restClient.coalescing.enabled:true}")
+    private boolean coalescingEnabled;
+
+    @Value("${restClient.coalescing.callTimeout:5s}")
+    private Duration callTimeout;
+
+    @Bean
+    public RequestCoalescer<MovieInfo> movieInfoCoalescer(MeterRegistry meterRegistry) {
+        return new RequestCoalescer<>("moviesInfo", coalescingEnabled, callTimeout, meterRegistry);
+    }
+
+    @Bean
+    public RequestCoalescer<Review> reviewsCoalescer(MeterRegistry meterRegistry) {
+        return new RequestCoalescer<>("reviews", coalescingEnabled, callTimeout, meterRegistry);
+    }
+}
@@ -0,0 +1,25 @@
+package com.reactivespring.config;
+
+import com.reactivespring.filter.ConcurrencyLimitFilter;
+import com.reactivespring.util.ConcurrencyLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
+public class ConcurrencyLimitConfig {
+
+    @Bean
+    public ConcurrencyLimiter concurrencyLimiter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        return new ConcurrencyLimiter(properties.getInitialLimit(), properties.getMinLimit(), properties.getMaxLimit(),
+                properties.getSmoothing(), properties.getRttTolerance(), properties.getLongWindow(), properties.getWindow(),
+                properties.getWindowSamples(), meterRegistry);
+    }
+
+    @Bean
+    public ConcurrencyLimitFilter concurrencyLimitFilter(ConcurrencyLimitProperties properties, ConcurrencyLimiter concurrencyLimiter) {
+        return new ConcurrencyLimitFilter(properties, concurrencyLimiter);
+    }
+}
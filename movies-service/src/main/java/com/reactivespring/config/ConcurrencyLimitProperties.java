@@ -0,0 +1,31 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.ConcurrencyLimiter;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//concurrencyLimit.* - see ConcurrencyLimiter and ConcurrencyLimitFilter
+@Data
+@ConfigurationProperties(prefix = "concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+    private int initialLimit = 50;
+    private int minLimit = 10;
+    private int maxLimit = 500;
+    private double smoothing = 0.2;
+    private double rttTolerance = 1.5; //latency may grow to this multiple of the long term average before the limit shrinks
+    private int longWindow = 600; //windows averaged into the long term latency
+    private Duration window = Duration.ofMillis(100);
+    private int windowSamples = 10;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private ConcurrencyLimiter.Priority defaultPriority = ConcurrencyLimiter.Priority.NORMAL;
+    private Map<String, ConcurrencyLimiter.Priority> routes = new LinkedHashMap<>(); //path pattern -> priority, first match wins
+    private List<String> excluded = new ArrayList<>(); //path patterns that aren't limited, e.g. long lived streams
+}
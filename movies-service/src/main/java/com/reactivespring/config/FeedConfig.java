@@ -0,0 +1,30 @@
+package com.reactivespring.config;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.util.MovieFeed;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+@Configuration
+public class FeedConfig {
+
+    @Value("${feed.grace:5s}")
+    private Duration feedGrace;
+
+    //MovieInfo changes and new / updated reviews, both pushed by the downstream services
+    @Bean
+    public MovieFeed movieFeed(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient,
+                               MeterRegistry meterRegistry) {
+        return new MovieFeed(movieId -> Flux.merge(
+                moviesInfoRestClient.streamMovieInfo(movieId).map(MovieEvent::ofMovieInfo),
+                reviewsRestClient.streamReviews(movieId).map(MovieEvent::ofReview)),
+                feedGrace, meterRegistry);
+    }
+}
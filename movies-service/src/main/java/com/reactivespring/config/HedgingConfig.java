@@ -0,0 +1,42 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.Hedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class HedgingConfig {
+
+    @Value("${restClient.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${restClient.hedging.percentile:0.95}")
+    private double hedgingPercentile;
+
+    @Value("${restClient.hedging.minDelay:20ms}")
+    private Duration hedgingMinDelay;
+
+    @Value("${restClient.hedging.maxDelay:1s}")
+    private Duration hedgingMaxDelay;
+
+    @Value("${restClient.hedging.maxExtraLoad:0.05}")
+    private double hedgingMaxExtraLoad;
+
+    @Bean
+    public Hedger moviesInfoHedger(MeterRegistry meterRegistry) {
+        return hedger("moviesInfo", meterRegistry);
+    }
+
+    @Bean
+    public Hedger reviewsHedger(MeterRegistry meterRegistry) {
+        return hedger("reviews", meterRegistry);
+    }
+
+    private Hedger hedger(String name, MeterRegistry meterRegistry) {
+        return new Hedger(name, hedgingEnabled, hedgingPercentile, hedgingMinDelay, hedgingMaxDelay, hedgingMaxExtraLoad, meterRegistry);
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+//restClient.http.<downstream>.* - one connection pool and set of timeouts per backing service
+@Data
+@ConfigurationProperties(prefix = "rest-client.http")
+public class HttpClientProperties {
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+        private int maxConnections = 100;
+        private int pendingAcquireMaxCount = 200; //requests allowed to wait for a connection, more fail fast
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        private Duration maxIdleTime = Duration.ofSeconds(30); //below the server keep-alive so we never reuse a closed connection
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(1);
+        private Duration responseTimeout = Duration.ofSeconds(3);
+        private boolean h2c = false; //HTTP/2 over cleartext with prior knowledge - server needs server.http2.enabled
+        private boolean compress = false; //send Accept-Encoding: gzip and decompress responses
+        private boolean smile = true; //prefer application/x-jackson-smile over JSON on this hop
+        private List<URI> instances = new ArrayList<>(); //when set, requests are balanced across them, see LoadBalancer
+        private LoadBalancing loadBalancing = new LoadBalancing();
+    }
+
+    @Data
+    public static class LoadBalancing {
+        private int consecutiveFailures = 5;
+        private Duration slowCallThreshold = Duration.ofSeconds(2);
+        private Duration ejectionTime = Duration.ofSeconds(30);
+        private int maxEjectionPercent = 50;
+    }
+}
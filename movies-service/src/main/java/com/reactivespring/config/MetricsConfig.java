@@ -0,0 +1,16 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.DownstreamTagsProvider;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    //replaces the default provider of the auto-configured WebClient metrics filter
+    @Bean
+    public WebClientExchangeTagsProvider downstreamTagsProvider() {
+        return new DownstreamTagsProvider();
+    }
+}
@@ -0,0 +1,81 @@
+package com.reactivespring.config;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesRequestException;
+import com.reactivespring.exception.ReviewsClientException;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfig {
+
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry(MeterRegistry meterRegistry) {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        return circuitBreakerRegistry;
+    }
+
+    @Bean
+    public BulkheadRegistry bulkheadRegistry(MeterRegistry meterRegistry) {
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+        return bulkheadRegistry;
+    }
+
+    @Bean
+    public CircuitBreaker moviesInfoCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, ResilienceProperties resilienceProperties) {
+        return circuitBreakerRegistry.circuitBreaker("moviesInfo", circuitBreakerConfig(resilienceProperties.getMoviesInfo()));
+    }
+
+    @Bean
+    public CircuitBreaker reviewsCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, ResilienceProperties resilienceProperties) {
+        return circuitBreakerRegistry.circuitBreaker("reviews", circuitBreakerConfig(resilienceProperties.getReviews()));
+    }
+
+    @Bean
+    public Bulkhead moviesInfoBulkhead(BulkheadRegistry bulkheadRegistry, ResilienceProperties resilienceProperties) {
+        return bulkheadRegistry.bulkhead("moviesInfo", bulkheadConfig(resilienceProperties.getMoviesInfo()));
+    }
+
+    @Bean
+    public Bulkhead reviewsBulkhead(BulkheadRegistry bulkheadRegistry, ResilienceProperties resilienceProperties) {
+        return bulkheadRegistry.bulkhead("reviews", bulkheadConfig(resilienceProperties.getReviews()));
+    }
+
+    private CircuitBreakerConfig circuitBreakerConfig(ResilienceProperties.Downstream downstream) {
+        return CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(downstream.getSlidingWindowSize())
+                .minimumNumberOfCalls(downstream.getMinimumNumberOfCalls())
+                .failureRateThreshold(downstream.getFailureRateThreshold())
+                .slowCallRateThreshold(downstream.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(downstream.getSlowCallDurationThreshold())
+                .waitDurationInOpenState(downstream.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(downstream.getPermittedCallsInHalfOpenState())
+                .automaticTransitionFromOpenToHalfOpenEnabled(true)
+                //4xx means the downstream is healthy and answered - don't count it against it, neither is our own deadline
+                .ignoreExceptions(MoviesInfoClientException.class, ReviewsClientException.class, MoviesRequestException.class,
+                        DeadlineExceededException.class)
+                .build();
+    }
+
+    private BulkheadConfig bulkheadConfig(ResilienceProperties.Downstream downstream) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(downstream.getMaxConcurrentCalls())
+                .maxWaitDuration(downstream.getMaxWaitDuration())
+                .build();
+    }
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.config;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.util.StaleFallback;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class StaleFallbackConfig {
+
+    @Value("${restClient.stale.enabled:true}")
+    private boolean staleEnabled;
+
+    @Value("${restClient.stale.maxSize:10000}")
+    private long staleMaxSize;
+
+    @Value("${restClient.stale.maxAge:1h}")
+    private Duration staleMaxAge;
+
+    @Value("${restClient.stale.latencyThreshold:1s}")
+    private Duration staleLatencyThreshold;
+
+    //client errors (404, 400) are answers, not outages - they are never hidden behind stale data
+    @Bean
+    public StaleFallback<MovieInfo> movieInfoStaleFallback(MeterRegistry meterRegistry) {
+        return new StaleFallback<>("moviesInfo", staleEnabled, staleMaxSize, staleMaxAge, staleLatencyThreshold,
+                ex -> !(ex instanceof MoviesInfoClientException), meterRegistry);
+    }
+
+    @Bean
+    public StaleFallback<List<Review>> reviewsStaleFallback(MeterRegistry meterRegistry) {
+        return new StaleFallback<>("reviews", staleEnabled, staleMaxSize, staleMaxAge, staleLatencyThreshold,
+                ex -> !(ex instanceof ReviewsClientException), meterRegistry);
+    }
+}
@@ -1,15 +1,87 @@
 package com.reactivespring.config;
 
+import com.reactivespring.util.DeadlineExchangeFilter;
+import com.reactivespring.util.DownstreamTagsProvider;
+import com.reactivespring.util.LoadBalancer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
 public class WebClientConfig {
 
+    private static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider(HttpClientProperties httpClientProperties) {
+        return connectionProvider("moviesInfo", httpClientProperties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider(HttpClientProperties httpClientProperties) {
+        return connectionProvider("reviews", httpClientProperties.getReviews());
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, HttpClientProperties httpClientProperties, MeterRegistry meterRegistry) {
+        return webClient("moviesInfo", builder, moviesInfoConnectionProvider(httpClientProperties), httpClientProperties.getMoviesInfo(),
+                meterRegistry);
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public WebClient reviewsWebClient(WebClient.Builder builder, HttpClientProperties httpClientProperties, MeterRegistry meterRegistry) {
+        return webClient("reviews", builder, reviewsConnectionProvider(httpClientProperties), httpClientProperties.getReviews(),
+                meterRegistry);
+    }
+
+    private ConnectionProvider connectionProvider(String name, HttpClientProperties.Downstream downstream) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .maxIdleTime(downstream.getMaxIdleTime())
+                .maxLifeTime(downstream.getMaxLifeTime())
+                .evictInBackground(downstream.getEvictInBackground())
+                .metrics(true) //reactor.netty.connection.provider.* gauges, tagged with the pool name
+                .build();
+    }
+
+    private WebClient webClient(String name, WebClient.Builder builder, ConnectionProvider connectionProvider,
+                                HttpClientProperties.Downstream downstream, MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis())
+                .responseTimeout(downstream.getResponseTimeout())
+                .compress(downstream.isCompress())
+                .protocol(downstream.isH2c() ? HttpProtocol.H2C : HttpProtocol.HTTP11);
+
+        //clone - the auto-configured builder is shared, keep each downstream's connector to itself
+        WebClient.Builder downstreamBuilder = builder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultRequest(request -> request.attribute(DownstreamTagsProvider.CLIENT_ATTRIBUTE, name)) //'client' tag of http.client.requests
+                .filter(new DeadlineExchangeFilter());
+
+        //Smile when the service can produce it, JSON from anything that can't (or from an older version)
+        if (downstream.isSmile()) {
+            downstreamBuilder.defaultHeader(HttpHeaders.ACCEPT, SMILE_VALUE, "application/json;q=0.9");
+        }
+
+        //no instances - restClient.*Url is called as is (single instance or an external load balancer)
+        if (!downstream.getInstances().isEmpty()) {
+            HttpClientProperties.LoadBalancing loadBalancing = downstream.getLoadBalancing();
+            downstreamBuilder.filter(new LoadBalancer(name, downstream.getInstances(), loadBalancing.getConsecutiveFailures(),
+                    loadBalancing.getSlowCallThreshold(), loadBalancing.getEjectionTime(), loadBalancing.getMaxEjectionPercent(),
+                    meterRegistry));
+        }
+        return downstreamBuilder.build();
     }
 
 }
@@ -3,15 +3,38 @@ package com.reactivespring.controller;
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesRequestException;
+import com.reactivespring.util.ETags;
+import com.reactivespring.util.MovieEnvelope;
+import com.reactivespring.util.MovieFeed;
+import com.reactivespring.util.MovieFieldset;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 @RestController
@@ -21,17 +44,167 @@ public class MoviesController {
 
     private final MoviesInfoRestClient moviesInfoRestClient;
     private final ReviewsRestClient reviewsRestClient;
+    private final MovieFeed movieFeed;
 
+    private static final List<String> REVIEW_SORTS = List.of("newest", "rating");
 
+    @Value("${restClient.reviewPage.maxLimit:100}")
+    private int reviewMaxLimit;
+
+    @Value("${feed.heartbeat:15s}")
+    private Duration feedHeartbeat;
+
+    @Value("${feed.bufferSize:256}")
+    private int feedBufferSize;
+
+    @Value("${restClient.batch.maxIds:100}")
+    private int batchMaxIds;
+
+    @Value("${restClient.batch.size:25}")
+    private int batchSize;
+
+    @Value("${restClient.batch.concurrency:2}")
+    private int batchConcurrency;
+
+
+    //weak ETag over the assembled Movie - If-None-Match with it gets a 304 (answered by the result handler) without a body
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
-
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                .flatMap(movieInfo -> {
-                            Mono<List<Review>> reviewsListMono = reviewsRestClient.retrieveReviews(movieId)
-                                    .collectList();
-                            return reviewsListMono.map(reviews -> new Movie(movieInfo, reviews));
-                        }
-                );
+    public Mono<ResponseEntity<Movie>> retrieveMovieById(@PathVariable("id") String movieId,
+                                                         @RequestParam(value = "fields", required = false) List<String> fields,
+                                                         @RequestParam(value = "reviewLimit", required = false) Integer reviewLimit,
+                                                         @RequestParam(value = "reviewSort", required = false) String reviewSort,
+                                                         @RequestParam(value = "reviewCursor", required = false) String reviewCursor) {
+
+        return retrieveMovie(movieId, fields, reviewLimit, reviewSort, reviewCursor)
+                .map(movie -> ResponseEntity.ok().eTag(ETags.of(movie)).body(movie));
+    }
+
+    private Mono<Movie> retrieveMovie(String movieId, List<String> fields, Integer reviewLimit, String reviewSort,
+                                      String reviewCursor) {
+
+        //?fields= - only what was asked for is fetched, without reviewList there is no call to the review service
+        MovieFieldset fieldset = MovieFieldset.parse(fields);
+        Mono<MovieInfo> movieInfoMono = moviesInfoRestClient.retrieveMovieInfo(movieId, fieldset);
+        if (!fieldset.isReviews()) {
+            return movieInfoMono.map(movieInfo -> new Movie(movieInfo, null));
+        }
+
+        if (reviewLimit != null || reviewSort != null || reviewCursor != null) {
+            return retrieveMovieWithReviewPage(movieId, movieInfoMono, reviewLimit, reviewSort, reviewCursor);
+        }
+
+        //both calls are subscribed at the same time - zip cancels the other one as soon as one of them fails (e.g. 404 on info)
+        Mono<List<Review>> reviewsListMono = reviewsRestClient.retrieveReviewList(movieId);
+
+        return Mono.zip(movieInfoMono, reviewsListMono,
+                (movieInfo, reviews) -> new Movie(movieInfo, reviews));
+    }
+
+    //only one page of reviews - sorted and limited by the review service's query, never trimmed here
+    private Mono<Movie> retrieveMovieWithReviewPage(String movieId, Mono<MovieInfo> movieInfoMono, Integer reviewLimit,
+                                                    String reviewSort, String reviewCursor) {
+
+        if (reviewLimit != null && (reviewLimit < 1 || reviewLimit > reviewMaxLimit)) {
+            return Mono.error(new MoviesRequestException("reviewLimit must be between 1 and " + reviewMaxLimit));
+        }
+        if (reviewSort != null && !REVIEW_SORTS.contains(reviewSort.toLowerCase())) {
+            return Mono.error(new MoviesRequestException("reviewSort must be one of " + String.join(", ", REVIEW_SORTS)));
+        }
+
+        return Mono.zip(movieInfoMono,
+                reviewsRestClient.retrieveReviewPage(movieId, reviewLimit, reviewSort, reviewCursor),
+                (movieInfo, page) -> new Movie(movieInfo, page.getReviews(), page.getNextCursor()));
+    }
+
+    //passthrough aggregation - same JSON as /{id}, but the downstream bodies are spliced into the response as raw buffers
+    //without building MovieInfo / Review objects. the near cache, stale fallback and hedging only apply to /{id}
+    @GetMapping(value = "/{id}/raw", produces = MediaType.APPLICATION_JSON_VALUE)
+    public Flux<DataBuffer> retrieveRawMovieById(@PathVariable("id") String movieId, ServerHttpResponse response) {
+
+        return Mono.zip(moviesInfoRestClient.retrieveMovieInfoRaw(movieId), reviewsRestClient.retrieveReviewsRaw(movieId))
+                .flatMapMany(raw -> MovieEnvelope.movie(response.bufferFactory(), raw.getT1(), raw.getT2()))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release); //the other body when one call fails
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieEvent> streamMovieById(@PathVariable("id") String movieId) {
+
+        Flux<MovieEvent> movieInfoEvent = moviesInfoRestClient.retrieveMovieInfo(movieId)
+                .map(MovieEvent::ofMovieInfo)
+                .flux();
+        Flux<MovieEvent> reviewEvents = reviewsRestClient.retrieveReviews(movieId)
+                .map(MovieEvent::ofReview);
+
+        //both calls start together, reviews are written as they arrive right after the movieInfo line -
+        //nothing is collected, early reviews wait in the bounded prefetch queue and backpressure the reviews call
+        return Flux.mergeSequential(movieInfoEvent, reviewEvents);
+    }
+
+    //live feed: the whole Movie first (event "movie"), then every change as a delta (event "movieInfo" / "review") from
+    //the upstream shared by everyone watching the movie. the feed is subscribed before the snapshot is fetched, changes
+    //made meanwhile are held back and sent after it - they may repeat what the snapshot has, a review delta replaces
+    //the review with the same reviewId. a client that can't keep up with feed.bufferSize is disconnected
+    @GetMapping(value = "/{id}/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> feedMovieById(@PathVariable("id") String movieId) {
+
+        Flux<ServerSentEvent<Object>> snapshot = retrieveMovie(movieId, null, null, null, null)
+                .map(movie -> ServerSentEvent.<Object>builder(movie).event("movie").build())
+                .flux();
+        Flux<ServerSentEvent<Object>> deltas = movieFeed.events(movieId)
+                .onBackpressureBuffer(feedBufferSize)
+                .map(event -> event.getMovieInfo() != null
+                        ? ServerSentEvent.<Object>builder(event.getMovieInfo()).event("movieInfo").build()
+                        : ServerSentEvent.<Object>builder(event.getReview()).event("review").build());
+        //comment-only heartbeats for proxies, started by the first event (the snapshot) - until then nothing is written,
+        //so a failed or unknown snapshot still gets its status code however long it takes
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(feedHeartbeat)
+                .map(tick -> ServerSentEvent.builder().comment("heartbeat").build());
+
+        return Flux.mergeSequential(snapshot, deltas)
+                .publish(events -> Flux.merge(events, heartbeats
+                        .delaySubscription(events.take(1))
+                        .takeUntilOther(events.ignoreElements())));
+    }
+
+    @GetMapping
+    public Flux<Movie> retrieveMoviesByIds(@RequestParam("ids") List<String> movieIds) {
+
+        List<String> distinctIds = movieIds.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (distinctIds.size() > batchMaxIds) {
+            return Flux.error(new MoviesRequestException(
+                    "Too many ids requested : " + distinctIds.size() + ", the limit is : " + batchMaxIds));
+        }
+
+        //every chunk costs exactly two downstream calls, chunks are fetched with bounded concurrency but emitted in order
+        return Flux.fromIterable(distinctIds)
+                .buffer(batchSize)
+                .flatMapSequential(this::retrieveMovieBatch, batchConcurrency);
+    }
+
+    private Flux<Movie> retrieveMovieBatch(List<String> movieIds) {
+
+        Mono<Map<String, MovieInfo>> movieInfosMono = moviesInfoRestClient.retrieveMovieInfos(movieIds)
+                .collectMap(MovieInfo::getMovieInfoId, Function.identity());
+        Mono<Map<String, Collection<Review>>> reviewsMono = reviewsRestClient.retrieveReviews(movieIds)
+                .collectMultimap(review -> String.valueOf(review.getMovieInfoId()));
+
+        //ids without a MovieInfo are skipped, same as a 404 on the single movie endpoint
+        return Mono.zip(movieInfosMono, reviewsMono)
+                .flatMapIterable(tuple -> movieIds.stream()
+                        .map(movieId -> {
+                            MovieInfo movieInfo = tuple.getT1().get(movieId);
+                            if (movieInfo == null) {
+                                return null;
+                            }
+                            Collection<Review> reviews = tuple.getT2().getOrDefault(movieId, List.of());
+                            return new Movie(movieInfo, new ArrayList<>(reviews));
+                        })
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toList()));
     }
 }
@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,5 +14,12 @@ import java.util.List;
 public class Movie {
 
     private MovieInfo movieInfo;
-    private List<Review> reviewList;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Review> reviewList; //null when ?fields= left the reviews out
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextReviewCursor; //?reviewCursor= for the next page of reviews, only when reviewLimit cut the list
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, null);
+    }
 }
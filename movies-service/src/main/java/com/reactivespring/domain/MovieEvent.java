@@ -0,0 +1,25 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+//one line of the streamed Movie - the first event carries the movieInfo, every following one a single review
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieEvent {
+
+    private MovieInfo movieInfo;
+    private Review review;
+
+    public static MovieEvent ofMovieInfo(MovieInfo movieInfo) {
+        return new MovieEvent(movieInfo, null);
+    }
+
+    public static MovieEvent ofReview(Review review) {
+        return new MovieEvent(null, review);
+    }
+}
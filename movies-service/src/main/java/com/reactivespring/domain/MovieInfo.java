@@ -1,6 +1,7 @@
 package com.reactivespring.domain;
 
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,7 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Validated
+@JsonInclude(JsonInclude.Include.NON_NULL) //?fields= responses leave out what wasn't asked for
 public class MovieInfo {
     private String movieInfoId;
     @NotBlank(message = "movieInfo.name must be present")
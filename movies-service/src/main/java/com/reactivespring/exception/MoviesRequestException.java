@@ -0,0 +1,10 @@
+package com.reactivespring.exception;
+
+public class MoviesRequestException extends RuntimeException{
+    private String message;
+
+    public MoviesRequestException(String message) {
+        super(message);
+        this.message = message;
+    }
+}
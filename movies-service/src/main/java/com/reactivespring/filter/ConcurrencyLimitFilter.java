@@ -0,0 +1,122 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.ConcurrencyLimitProperties;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.exception.MoviesRequestException;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.globalerrorhandler.GlobalErrorHandler;
+import com.reactivespring.util.ConcurrencyLimiter;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+//load shedding in front of the controllers: a request is only let through while the adaptive concurrency limit
+//has room for its route's priority, otherwise it gets 503 with Retry-After right away - cheaper for everyone than
+//queueing in the WebClient pools until the deadline passes. runs inside DeadlineFilter, so a deadline that passes
+//shows up here as a cancel and counts as a dropped request. so do 5xx answers and server side errors that escape the
+//error handlers - overload often shows up as failures, not as latency. ignored are the caller's mistakes (4xx) and
+//failures of a dependency (open breaker, full bulkhead, downstream 5xx or unreachable) - shrinking the limit doesn't
+//help a dependency that is down, it only sheds requests the cache and the stale fallbacks could still serve
+@Slf4j
+public class ConcurrencyLimitFilter implements WebFilter, Ordered {
+
+    private final ConcurrencyLimitProperties properties;
+    private final ConcurrencyLimiter limiter;
+    private final Map<PathPattern, ConcurrencyLimiter.Priority> routes = new LinkedHashMap<>();
+    private final List<PathPattern> excluded;
+    private final String retryAfterSeconds;
+
+    public ConcurrencyLimitFilter(ConcurrencyLimitProperties properties, ConcurrencyLimiter limiter) {
+        this.properties = properties;
+        this.limiter = limiter;
+        properties.getRoutes().forEach((pattern, priority) -> routes.put(PathPatternParser.defaultInstance.parse(pattern), priority));
+        this.excluded = properties.getExcluded().stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .collect(Collectors.toList());
+        this.retryAfterSeconds = String.valueOf(Math.max(1, properties.getRetryAfter().toSeconds()));
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1; //right after DeadlineFilter, before any work is done for the request
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        if (!properties.isEnabled() || excluded.stream().anyMatch(pattern -> pattern.matches(path))) {
+            return chain.filter(exchange);
+        }
+        ConcurrencyLimiter.Priority priority = priorityFor(path);
+        return limiter.tryAcquire(priority)
+                .map(permit -> chain.filter(exchange)
+                        .doOnSuccess(ignored -> {
+                            HttpStatus status = exchange.getResponse().getStatusCode();
+                            if (status == null || !status.is5xxServerError()) {
+                                permit.success();
+                            } else if (isDependencyFailure(exchange.getAttribute(GlobalErrorHandler.HANDLED_EXCEPTION_ATTRIBUTE))) {
+                                permit.ignore();
+                            } else {
+                                permit.dropped();
+                            }
+                        })
+                        .doOnError(ex -> {
+                            if (isClientError(ex) || isDependencyFailure(ex)) {
+                                permit.ignore();
+                            } else {
+                                permit.dropped();
+                            }
+                        })
+                        .doOnCancel(permit::dropped))
+                .orElseGet(() -> reject(exchange, priority));
+    }
+
+    private ConcurrencyLimiter.Priority priorityFor(PathContainer path) {
+        for (Map.Entry<PathPattern, ConcurrencyLimiter.Priority> route : routes.entrySet()) {
+            if (route.getKey().matches(path)) {
+                return route.getValue();
+            }
+        }
+        return properties.getDefaultPriority();
+    }
+
+    private static boolean isClientError(Throwable ex) {
+        if (ex instanceof ResponseStatusException) {
+            return ((ResponseStatusException) ex).getRawStatusCode() < 500;
+        }
+        return ex instanceof MoviesRequestException || ex instanceof MoviesInfoClientException || ex instanceof ReviewsClientException;
+    }
+
+    private static boolean isDependencyFailure(Throwable ex) {
+        return ex instanceof CallNotPermittedException || ex instanceof BulkheadFullException
+                || ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException
+                || ex instanceof WebClientRequestException;
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, ConcurrencyLimiter.Priority priority) {
+        log.debug("Shedding {} {} ({} priority), limit {} reached", exchange.getRequest().getMethod(),
+                exchange.getRequest().getPath(), priority, limiter.getLimit());
+        exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        return exchange.getResponse().setComplete();
+    }
+}
@@ -0,0 +1,32 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.util.StaleResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.util.TreeSet;
+
+//adds 'Warning: 110 movies-service "Response is Stale: <sources>"' when any part of the response came from the
+//last-known-good store. the header is added right before commit - on streamed responses a source that turns
+//stale after the first line was written can't be flagged anymore
+@Component
+public class StaleResponseFilter implements WebFilter {
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var staleResponse = new StaleResponse();
+        exchange.getResponse().beforeCommit(() -> {
+            if (staleResponse.isStale()) {
+                exchange.getResponse().getHeaders().add(HttpHeaders.WARNING,
+                        "110 movies-service \"Response is Stale: " + String.join(",", new TreeSet<>(staleResponse.getStaleSources())) + "\"");
+            }
+            return Mono.empty();
+        });
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(StaleResponse.class, staleResponse));
+    }
+}
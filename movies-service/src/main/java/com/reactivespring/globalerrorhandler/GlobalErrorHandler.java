@@ -1,25 +1,58 @@
 package com.reactivespring.globalerrorhandler;
 
+import com.reactivespring.exception.DeadlineExceededException;
 import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesRequestException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ServerWebExchange;
 
 @ControllerAdvice
 @Slf4j
 public class GlobalErrorHandler {
 
+    //the exception behind a 5xx answer, for ConcurrencyLimitFilter to tell overload from an unavailable dependency
+    public static final String HANDLED_EXCEPTION_ATTRIBUTE = GlobalErrorHandler.class.getName() + ".exception";
+
     @ExceptionHandler(MoviesInfoClientException.class)
     public ResponseEntity<String> handleClientException(MoviesInfoClientException ex) {
 
         log.error("Exception caught in handleClientException : {}", ex.getMessage());
         return ResponseEntity.status(ex.getStatusCode()).body(ex.getMessage());
     }
+
+    @ExceptionHandler(MoviesRequestException.class)
+    public ResponseEntity<String> handleRequestException(MoviesRequestException ex) {
+
+        log.error("Exception caught in handleRequestException : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler({CallNotPermittedException.class, BulkheadFullException.class})
+    public ResponseEntity<String> handleDownstreamUnavailable(RuntimeException ex, ServerWebExchange exchange) {
+
+        exchange.getAttributes().put(HANDLED_EXCEPTION_ATTRIBUTE, ex);
+        log.error("Exception caught in handleDownstreamUnavailable : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<String> handleDeadlineExceeded(DeadlineExceededException ex, ServerWebExchange exchange) {
+
+        exchange.getAttributes().put(HANDLED_EXCEPTION_ATTRIBUTE, ex);
+        log.error("Exception caught in handleDeadlineExceeded : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(ex.getMessage());
+    }
+
     @ExceptionHandler(RuntimeException.class)
-    public ResponseEntity<String> handleRunTimeException(RuntimeException ex) {
+    public ResponseEntity<String> handleRunTimeException(RuntimeException ex, ServerWebExchange exchange) {
 
+        exchange.getAttributes().put(HANDLED_EXCEPTION_ATTRIBUTE, ex);
         log.error("Exception caught in handleRunTimeException : {}", ex.getMessage());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
@@ -0,0 +1,39 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+//the Deadline of one caller waiting on work it shares with others (a RequestCoalescer call, a ReactiveNearCache load).
+//the shared work runs under a deadline of its own - the caller's only ends the caller's subscription, so a caller
+//with a short X-Request-Timeout-Ms gives up alone instead of failing everyone waiting for the same key
+public final class CallerDeadline {
+
+    private CallerDeadline() {
+    }
+
+    public static <T> Mono<T> apply(Mono<T> shared, String what) {
+        return Mono.deferContextual(context -> Deadline.from(context)
+                .map(deadline -> shared.timeout(remaining(deadline), Mono.error(() -> exceeded(what))))
+                .orElse(shared));
+    }
+
+    public static <T> Flux<T> apply(Flux<T> shared, String what) {
+        return Flux.deferContextual(context -> Deadline.from(context)
+                .map(deadline -> shared.timeout(Mono.delay(remaining(deadline)),
+                        element -> Mono.delay(remaining(deadline)),
+                        Flux.error(() -> exceeded(what))))
+                .orElse(shared));
+    }
+
+    private static Duration remaining(Deadline deadline) {
+        Duration remaining = deadline.remaining();
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    private static DeadlineExceededException exceeded(String what) {
+        return new DeadlineExceededException("Deadline exceeded waiting for " + what);
+    }
+}
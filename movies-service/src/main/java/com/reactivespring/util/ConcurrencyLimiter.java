@@ -0,0 +1,171 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//adaptive concurrency limit (gradient, as in Netflix concurrency-limits Gradient2): the average latency of the last
+//window is compared with a long term average, when it rises above rttTolerance times that the limit shrinks by the
+//ratio, otherwise it grows by ~sqrt(limit) per window. a dropped request (cancelled, timed out) cuts the limit by
+//10%, at most once per window - a burst of drops is one overload signal, not dozens. requests over the limit are
+//rejected right away instead of queueing - each priority may only use its share of the limit, so LOW is shed first
+public class ConcurrencyLimiter {
+
+    public enum Priority {
+        HIGH(1.0), NORMAL(0.9), LOW(0.6);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+    }
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double rttTolerance;
+    private final double longRttWeight;
+    private final long windowNanos;
+    private final int windowSamples;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Priority, Counter> rejectedCounters = new EnumMap<>(Priority.class);
+
+    private volatile double limit;
+    //guarded by this
+    private double longRtt;
+    private long windowStart = System.nanoTime();
+    private long windowRttSum;
+    private int windowCount;
+    private int windowMaxInFlight;
+    private long lastBackoff;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance,
+                              int longWindow, Duration window, int windowSamples, MeterRegistry meterRegistry) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.rttTolerance = rttTolerance;
+        this.longRttWeight = 2.0 / (longWindow + 1);
+        this.windowNanos = window.toNanos();
+        this.windowSamples = windowSamples;
+        this.lastBackoff = windowStart - windowNanos;
+        Gauge.builder("movies.server.concurrency.limit", this, ConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("movies.server.concurrency.inflight", inFlight, AtomicInteger::get)
+                .description("Requests currently admitted by the concurrency limiter")
+                .register(meterRegistry);
+        for (Priority priority : Priority.values()) {
+            rejectedCounters.put(priority, Counter.builder("movies.server.concurrency.rejected")
+                    .description("Requests rejected because the concurrency limit was reached")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    //empty - over the limit for this priority, the request should be rejected
+    public Optional<Permit> tryAcquire(Priority priority) {
+        int allowed = Math.max(1, (int) (limit * priority.share));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                rejectedCounters.get(priority).increment();
+                return Optional.empty();
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return Optional.of(new Permit(current + 1));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        long now = System.nanoTime();
+        if (dropped) {
+            if (now - lastBackoff >= windowNanos) {
+                lastBackoff = now;
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            }
+            return;
+        }
+        windowRttSum += rttNanos;
+        windowCount++;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        if (windowCount < windowSamples || now - windowStart < windowNanos) {
+            return;
+        }
+        double shortRtt = (double) windowRttSum / windowCount;
+        int maxInFlight = windowMaxInFlight;
+        windowStart = now;
+        windowRttSum = 0;
+        windowCount = 0;
+        windowMaxInFlight = 0;
+
+        longRtt = longRtt == 0 ? shortRtt : longRtt + (shortRtt - longRtt) * longRttWeight;
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95; //latency dropped a lot (e.g. after an overload) - let the baseline catch up faster
+        }
+        if (maxInFlight < limit / 2) {
+            return; //traffic doesn't use the limit - no evidence to grow it
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    //one admitted request, exactly one of success/dropped/ignore counts
+    public class Permit {
+        private final int inFlightAtStart;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        //completed normally - the latency is a sample
+        public void success() {
+            if (release()) {
+                onSample(System.nanoTime() - start, inFlightAtStart, false);
+            }
+        }
+
+        //cancelled or timed out - a sign of overload
+        public void dropped() {
+            if (release()) {
+                onSample(System.nanoTime() - start, inFlightAtStart, true);
+            }
+        }
+
+        //failed for reasons that say nothing about load (e.g. 4xx)
+        public void ignore() {
+            release();
+        }
+
+        private boolean release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
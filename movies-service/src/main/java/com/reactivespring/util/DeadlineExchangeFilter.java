@@ -0,0 +1,29 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+//passes the remaining budget of the inbound request on to the downstream as X-Request-Timeout-Ms, so it stops
+//working on a request we've given up on. when nothing is left the call isn't sent at all
+public class DeadlineExchangeFilter implements ExchangeFilterFunction {
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(context -> Deadline.from(context)
+                .map(deadline -> {
+                    long remainingMillis = deadline.remaining().toMillis();
+                    if (remainingMillis <= 0) {
+                        return Mono.<ClientResponse>error(new DeadlineExceededException(
+                                "Deadline exceeded before calling " + request.url()));
+                    }
+                    return next.exchange(ClientRequest.from(request)
+                            .header(Deadline.HEADER, String.valueOf(remainingMillis))
+                            .build());
+                })
+                .orElseGet(() -> next.exchange(request)));
+    }
+}
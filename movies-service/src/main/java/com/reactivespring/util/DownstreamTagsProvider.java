@@ -0,0 +1,28 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTags;
+import org.springframework.boot.actuate.metrics.web.reactive.client.WebClientExchangeTagsProvider;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+
+//tags of http.client.requests: the default ones plus 'client' (moviesInfo / reviews, set on each downstream's
+//WebClient by WebClientConfig - host and port say nothing once requests are load balanced). the query string is
+//cut from 'uri', the clients expand ids into it and every batch would become a time series of its own
+public class DownstreamTagsProvider implements WebClientExchangeTagsProvider {
+
+    public static final String CLIENT_ATTRIBUTE = DownstreamTagsProvider.class.getName() + ".client";
+
+    @Override
+    public Iterable<Tag> tags(ClientRequest request, ClientResponse response, Throwable throwable) {
+        String uri = WebClientExchangeTags.uri(request).getValue();
+        int query = uri.indexOf('?');
+        return Tags.of(WebClientExchangeTags.method(request),
+                Tag.of("uri", query >= 0 ? uri.substring(0, query) : uri),
+                WebClientExchangeTags.clientName(request),
+                WebClientExchangeTags.status(response, throwable),
+                WebClientExchangeTags.outcome(response),
+                Tag.of("client", request.attribute(CLIENT_ATTRIBUTE).map(Object::toString).orElse("none")));
+    }
+}
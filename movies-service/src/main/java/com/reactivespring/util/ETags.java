@@ -0,0 +1,36 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+
+//weak ETag of an assembled Movie: Fnv1a over the MovieInfo, every review and the next review cursor. it is
+//computed from the objects in memory, so a 304 never needs the body serialized
+public final class ETags {
+
+    private ETags() {
+    }
+
+    public static String of(Movie movie) {
+        long hash = Fnv1a.OFFSET;
+        MovieInfo movieInfo = movie.getMovieInfo();
+        if (movieInfo != null) {
+            hash = Fnv1a.add(hash, movieInfo.getMovieInfoId());
+            hash = Fnv1a.add(hash, movieInfo.getName());
+            hash = Fnv1a.add(hash, movieInfo.getYear());
+            hash = Fnv1a.add(hash, movieInfo.getCast());
+            hash = Fnv1a.add(hash, movieInfo.getReleaseDate());
+        }
+        if (movie.getReviewList() != null) {
+            hash = Fnv1a.add(hash, movie.getReviewList().size());
+            for (Review review : movie.getReviewList()) {
+                hash = Fnv1a.add(hash, review.getReviewId());
+                hash = Fnv1a.add(hash, review.getMovieInfoId());
+                hash = Fnv1a.add(hash, review.getComment());
+                hash = Fnv1a.add(hash, review.getRating());
+            }
+        }
+        hash = Fnv1a.add(hash, movie.getNextReviewCursor());
+        return Fnv1a.weakETag(hash);
+    }
+}
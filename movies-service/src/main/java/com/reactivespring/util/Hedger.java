@@ -0,0 +1,112 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+//hedged requests for idempotent GETs: when the first attempt hasn't answered within the observed latency
+//percentile a second identical attempt is sent, whichever signals first wins and the other one is cancelled.
+//only the primary attempts are timed - a primary cancelled because the hedge won counts with the time it ran, so
+//fast hedges (or fast failing ones) can't pull the percentile, and with it the hedge delay, down.
+//hedges are paid from a token bucket that every call fills with maxExtraLoad tokens, so they can't add more
+//than that fraction of extra traffic
+public class Hedger {
+
+    private final boolean enabled;
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final LatencyTracker latencyTracker;
+    private final RetryBudget hedgeBudget;
+    private final Counter sentCounter;
+    private final Counter wonCounter;
+    private final Counter suppressedCounter;
+
+    public Hedger(String name, boolean enabled, double percentile, Duration minDelay, Duration maxDelay, double maxExtraLoad,
+                  MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.latencyTracker = new LatencyTracker(1000, percentile);
+        this.hedgeBudget = new RetryBudget(maxExtraLoad, 0, 100);
+        this.sentCounter = hedgeCounter(name, "sent", meterRegistry);
+        this.wonCounter = hedgeCounter(name, "won", meterRegistry);
+        this.suppressedCounter = hedgeCounter(name, "suppressed", meterRegistry);
+        Gauge.builder("movies.client.hedge.delay", () -> hedgeDelay().toMillis())
+                .description("Current delay before a hedged request is sent, in milliseconds")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> attempt) {
+        if (!enabled) {
+            return Mono.defer(attempt);
+        }
+        return hedgeMany(() -> attempt.get().flux())
+                .singleOrEmpty();
+    }
+
+    public <T> Flux<T> hedgeMany(Supplier<Flux<T>> attempt) {
+        if (!enabled) {
+            return Flux.defer(attempt);
+        }
+        return Flux.defer(() -> {
+            hedgeBudget.deposit();
+            long start = System.nanoTime();
+            var answered = new AtomicBoolean();
+            var timed = new AtomicBoolean();
+
+            Flux<T> primary = attempt.get()
+                    .doOnEach(signal -> {
+                        answered.set(true);
+                        recordPrimary(timed, start);
+                    })
+                    .doOnCancel(() -> recordPrimary(timed, start));
+            Flux<T> hedge = Mono.delay(hedgeDelay())
+                    .flatMapMany(tick -> {
+                        if (!hedgeBudget.tryWithdraw()) {
+                            suppressedCounter.increment();
+                            return Flux.never(); //no budget - leave it to the primary
+                        }
+                        sentCounter.increment();
+                        return attempt.get()
+                                .onErrorResume(ex -> Flux.never()) //a failed hedge must not fail the call, the primary decides
+                                .doOnEach(signal -> {
+                                    if (answered.compareAndSet(false, true)) {
+                                        wonCounter.increment();
+                                    }
+                                });
+                    });
+
+            return Flux.firstWithSignal(primary, hedge);
+        });
+    }
+
+    private void recordPrimary(AtomicBoolean timed, long start) {
+        if (timed.compareAndSet(false, true)) {
+            latencyTracker.record(System.nanoTime() - start);
+        }
+    }
+
+    private Duration hedgeDelay() {
+        Duration observed = latencyTracker.percentile();
+        if (observed == null) {
+            return maxDelay;
+        }
+        if (observed.compareTo(minDelay) < 0) {
+            return minDelay;
+        }
+        return observed.compareTo(maxDelay) > 0 ? maxDelay : observed;
+    }
+
+    private static Counter hedgeCounter(String client, String outcome, MeterRegistry meterRegistry) {
+        return Counter.builder("movies.client.hedges")
+                .tags("client", client, "outcome", outcome)
+                .register(meterRegistry);
+    }
+}
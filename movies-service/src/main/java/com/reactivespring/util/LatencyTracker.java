@@ -0,0 +1,42 @@
+package com.reactivespring.util;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+//rolling window of the last response times, percentile is recomputed every window/4 samples instead of per call
+public class LatencyTracker {
+
+    private static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private final double percentile;
+    private final int recomputeEvery;
+
+    private int next;
+    private int count;
+    private int sinceRecompute;
+    private long percentileNanos = -1;
+
+    public LatencyTracker(int window, double percentile) {
+        this.samples = new long[window];
+        this.percentile = percentile;
+        this.recomputeEvery = Math.max(1, window / 4);
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+        if (++sinceRecompute >= recomputeEvery || percentileNanos < 0 && count >= MIN_SAMPLES) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            percentileNanos = sorted[(int) Math.min(count - 1, Math.ceil(percentile * count) - 1)];
+        }
+    }
+
+    //null until there are enough samples to trust the percentile
+    public synchronized Duration percentile() {
+        return count < MIN_SAMPLES || percentileNanos < 0 ? null : Duration.ofNanos(percentileNanos);
+    }
+}
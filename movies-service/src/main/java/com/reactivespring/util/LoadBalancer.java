@@ -0,0 +1,181 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+//client side load balancing for a WebClient: every request is sent to one of the instances (scheme/host/port of the
+//request url are replaced), picked with power of two choices - two random instances, the one with fewer outstanding
+//requests wins, latency breaks ties. instances are ejected passively for ejectionTime after consecutiveFailures
+//5xx / connection errors in a row or when their average latency goes above slowCallThreshold. at most
+//maxEjectionPercent of the instances are out at the same time, if every instance is out they are all used again
+@Slf4j
+public class LoadBalancer implements ExchangeFilterFunction {
+
+    private static final double LATENCY_WEIGHT = 0.2; //ewma, ~ the last 10 calls
+
+    private final String name;
+    private final List<Instance> instances;
+    private final int consecutiveFailures;
+    private final long slowCallThresholdNanos;
+    private final long ejectionTimeNanos;
+    private final int maxEjected;
+
+    public LoadBalancer(String name, List<URI> instances, int consecutiveFailures, Duration slowCallThreshold,
+                        Duration ejectionTime, int maxEjectionPercent, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.instances = instances.stream()
+                .map(uri -> new Instance(uri, meterRegistry))
+                .collect(Collectors.toList());
+        this.consecutiveFailures = consecutiveFailures;
+        this.slowCallThresholdNanos = slowCallThreshold.toNanos();
+        this.ejectionTimeNanos = ejectionTime.toNanos();
+        this.maxEjected = instances.size() * maxEjectionPercent / 100;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.defer(() -> {
+            Instance instance = choose();
+            URI url = UriComponentsBuilder.fromUri(request.url())
+                    .scheme(instance.uri.getScheme())
+                    .host(instance.uri.getHost())
+                    .port(instance.uri.getPort())
+                    .build(true)
+                    .toUri();
+
+            //outstanding and latency cover the exchange up to the response headers, not the body
+            instance.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            var done = new AtomicBoolean();
+            return next.exchange(ClientRequest.from(request).url(url).build())
+                    .doOnNext(response -> {
+                        if (done.compareAndSet(false, true)) {
+                            instance.outstanding.decrementAndGet();
+                            record(instance, !response.statusCode().is5xxServerError(), System.nanoTime() - start);
+                        }
+                    })
+                    .doOnError(ex -> {
+                        if (done.compareAndSet(false, true)) {
+                            instance.outstanding.decrementAndGet();
+                            record(instance, false, System.nanoTime() - start);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (done.compareAndSet(false, true)) {
+                            instance.outstanding.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    Instance choose() {
+        long now = System.nanoTime();
+        List<Instance> available = new ArrayList<>(instances.size());
+        for (Instance instance : instances) {
+            if (!instance.isEjected(now)) {
+                available.add(instance);
+            }
+        }
+        if (available.isEmpty()) {
+            available = instances; //panic mode - better a struggling instance than no instance
+        }
+        if (available.size() == 1) {
+            return available.get(0);
+        }
+        var random = ThreadLocalRandom.current();
+        int first = random.nextInt(available.size());
+        int second = random.nextInt(available.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        return better(available.get(first), available.get(second));
+    }
+
+    private static Instance better(Instance a, Instance b) {
+        int outstandingA = a.outstanding.get();
+        int outstandingB = b.outstanding.get();
+        if (outstandingA != outstandingB) {
+            return outstandingA < outstandingB ? a : b;
+        }
+        return a.latencyNanos <= b.latencyNanos ? a : b;
+    }
+
+    private void record(Instance instance, boolean success, long latencyNanos) {
+        boolean eject;
+        synchronized (instance) {
+            instance.latencyNanos = instance.latencyNanos == 0
+                    ? latencyNanos
+                    : (long) (LATENCY_WEIGHT * latencyNanos + (1 - LATENCY_WEIGHT) * instance.latencyNanos);
+            instance.failures = success ? 0 : instance.failures + 1;
+            eject = instance.failures >= consecutiveFailures || instance.latencyNanos > slowCallThresholdNanos;
+        }
+        if (eject) {
+            tryEject(instance);
+        }
+    }
+
+    private synchronized void tryEject(Instance instance) {
+        long now = System.nanoTime();
+        if (instance.isEjected(now)) {
+            return;
+        }
+        long ejected = instances.stream().filter(i -> i.isEjected(now)).count();
+        if (ejected >= maxEjected) {
+            return;
+        }
+        log.warn("Ejecting {} instance {} for {}ms, consecutive failures : {}, latency : {}ms", name, instance.uri,
+                ejectionTimeNanos / 1_000_000, instance.failures, instance.latencyNanos / 1_000_000);
+        synchronized (instance) {
+            instance.ejectedUntil = now + ejectionTimeNanos;
+            instance.failures = 0;
+            instance.latencyNanos = 0; //comes back with a clean slate
+        }
+        instance.ejections.increment();
+    }
+
+    class Instance {
+
+        private final URI uri;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Counter ejections;
+        private volatile long latencyNanos;
+        private volatile long ejectedUntil;
+        private int failures;
+
+        Instance(URI uri, MeterRegistry meterRegistry) {
+            this.uri = uri;
+            Gauge.builder("movies.client.lb.outstanding", outstanding, AtomicInteger::get)
+                    .description("Requests in flight per downstream instance")
+                    .tags("client", name, "instance", uri.getAuthority())
+                    .register(meterRegistry);
+            this.ejections = Counter.builder("movies.client.lb.ejections")
+                    .tags("client", name, "instance", uri.getAuthority())
+                    .register(meterRegistry);
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil != 0 && now - ejectedUntil < 0;
+        }
+
+        URI getUri() {
+            return uri;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.reactivespring.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+
+//{"movieInfo":<raw movie info>,"reviewList":<raw reviews array>} written around the downstream buffers -
+//same JSON as Movie, without decoding MovieInfo / Review. the raw bodies go out as they came in
+public final class MovieEnvelope {
+
+    private static final byte[] START = "{\"movieInfo\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REVIEWS = ",\"reviewList\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] END = "}".getBytes(StandardCharsets.UTF_8);
+
+    private MovieEnvelope() {
+    }
+
+    public static Flux<DataBuffer> movie(DataBufferFactory bufferFactory, DataBuffer movieInfo, DataBuffer reviews) {
+        return Flux.just(bufferFactory.wrap(START), movieInfo, bufferFactory.wrap(REVIEWS), reviews, bufferFactory.wrap(END));
+    }
+}
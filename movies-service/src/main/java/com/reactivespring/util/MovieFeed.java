@@ -0,0 +1,46 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.MovieEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+//one upstream subscription per movie, shared by every client watching it. the first subscriber connects it, it is
+//cancelled `grace` after the last one has left (a client reconnecting within it finds the upstream still open).
+//when the upstream ends or fails all of its subscribers see it - SSE clients reconnect and start from a new snapshot
+public class MovieFeed {
+
+    private final Map<String, Flux<MovieEvent>> feeds = new ConcurrentHashMap<>();
+    private final Function<String, Flux<MovieEvent>> upstream;
+    private final Duration grace;
+
+    public MovieFeed(Function<String, Flux<MovieEvent>> upstream, Duration grace, MeterRegistry meterRegistry) {
+        this.upstream = upstream;
+        this.grace = grace;
+        Gauge.builder("movies.feed.upstreams", feeds, Map::size)
+                .description("Movies with a shared upstream feed")
+                .register(meterRegistry);
+    }
+
+    public Flux<MovieEvent> events(String movieId) {
+        return feeds.computeIfAbsent(movieId, this::connect);
+    }
+
+    private Flux<MovieEvent> connect(String movieId) {
+        AtomicReference<Flux<MovieEvent>> self = new AtomicReference<>();
+        Flux<MovieEvent> shared = Flux.defer(() -> upstream.apply(movieId))
+                //the first subscriber's context (its deadline) must not end the call everyone shares
+                .contextWrite(context -> context.delete(Deadline.class))
+                .doFinally(signal -> feeds.remove(movieId, self.get()))
+                .publish()
+                .refCount(1, grace);
+        self.set(shared);
+        return shared;
+    }
+}
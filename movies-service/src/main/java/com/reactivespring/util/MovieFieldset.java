@@ -0,0 +1,80 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesRequestException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+//?fields= of GET /v1/movies/{id}: MovieInfo properties, 'movieInfo' for all of them and 'reviewList'. reviews are
+//only fetched when asked for. MovieInfo is always fetched - at least its id - so an unknown movie is still a 404
+public final class MovieFieldset {
+
+    public static final MovieFieldset ALL = new MovieFieldset(null, true);
+
+    private static final String MOVIE_INFO = "movieInfo";
+    private static final String REVIEW_LIST = "reviewList";
+    private static final String MOVIE_INFO_ID = "movieInfoId";
+    private static final Set<String> MOVIE_INFO_FIELDS = new TreeSet<>(List.of(MOVIE_INFO_ID, "name", "year", "cast", "releaseDate"));
+
+    private final Set<String> movieInfoFields; //null - the whole MovieInfo
+    private final boolean reviews;
+
+    private MovieFieldset(Set<String> movieInfoFields, boolean reviews) {
+        this.movieInfoFields = movieInfoFields;
+        this.reviews = reviews;
+    }
+
+    public static MovieFieldset parse(List<String> fields) {
+        if (fields == null) {
+            return ALL;
+        }
+        Set<String> movieInfoFields = new TreeSet<>();
+        boolean wholeMovieInfo = false;
+        boolean reviews = false;
+        for (String field : fields) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+            if (name.equals(MOVIE_INFO)) {
+                wholeMovieInfo = true;
+            } else if (name.equals(REVIEW_LIST)) {
+                reviews = true;
+            } else if (MOVIE_INFO_FIELDS.contains(name)) {
+                movieInfoFields.add(name);
+            } else {
+                throw new MoviesRequestException("fields must be any of " + MOVIE_INFO + ", " + REVIEW_LIST + ", "
+                        + String.join(", ", MOVIE_INFO_FIELDS));
+            }
+        }
+        movieInfoFields.add(MOVIE_INFO_ID);
+        return new MovieFieldset(wholeMovieInfo ? null : Collections.unmodifiableSet(movieInfoFields), reviews);
+    }
+
+    public boolean isWholeMovieInfo() {
+        return movieInfoFields == null;
+    }
+
+    public Set<String> getMovieInfoFields() {
+        return movieInfoFields;
+    }
+
+    public boolean isReviews() {
+        return reviews;
+    }
+
+    //the same projection the info service would have made, for a MovieInfo that is already at hand (near cache)
+    public MovieInfo project(MovieInfo movieInfo) {
+        if (movieInfoFields == null) {
+            return movieInfo;
+        }
+        return new MovieInfo(movieInfo.getMovieInfoId(),
+                movieInfoFields.contains("name") ? movieInfo.getName() : null,
+                movieInfoFields.contains("year") ? movieInfo.getYear() : null,
+                movieInfoFields.contains("cast") ? movieInfo.getCast() : null,
+                movieInfoFields.contains("releaseDate") ? movieInfo.getReleaseDate() : null);
+    }
+}
@@ -0,0 +1,95 @@
+package com.reactivespring.util;
+
+import com.github.benmanes.caffeine.cache.AsyncCacheLoader;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+//bounded in-process cache in front of a downstream call - Caffeine runs one load per key and
+//refreshes entries in the background once they are older than refreshAfter (stale value is served meanwhile).
+//an empty Optional from the loader is a negative entry (e.g. 404), kept only for negativeTtl. a reloader, when given,
+//does the background refresh with the old value at hand (e.g. a conditional GET), instead of a plain load.
+//every load, a miss or a background refresh, runs under a Deadline of loadTimeout - others may be waiting for the same
+//key, so the Deadline of the request that missed only bounds that request's wait (CallerDeadline)
+public class ReactiveNearCache<V> {
+
+    private final AsyncLoadingCache<String, Optional<V>> cache;
+    private final Duration loadTimeout;
+
+    public ReactiveNearCache(String name, long maxSize, Duration ttl, Duration refreshAfter, Duration negativeTtl,
+                             Duration loadTimeout, Function<String, Mono<Optional<V>>> loader, MeterRegistry meterRegistry) {
+        this(name, maxSize, ttl, refreshAfter, negativeTtl, loadTimeout, loader, (key, oldValue) -> loader.apply(key), meterRegistry);
+    }
+
+    public ReactiveNearCache(String name, long maxSize, Duration ttl, Duration refreshAfter, Duration negativeTtl,
+                             Duration loadTimeout, Function<String, Mono<Optional<V>>> loader,
+                             BiFunction<String, Optional<V>, Mono<Optional<V>>> reloader, MeterRegistry meterRegistry) {
+
+        this.loadTimeout = loadTimeout;
+
+        AsyncLoadingCache<String, Optional<V>> loadingCache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Optional<V>>() {
+                    @Override
+                    public long expireAfterCreate(String key, Optional<V> value, long currentTime) {
+                        return value.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Optional<V> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Optional<V> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .refreshAfterWrite(refreshAfter)
+                .recordStats()
+                .buildAsync(new AsyncCacheLoader<>() {
+                    @Override
+                    public CompletableFuture<Optional<V>> asyncLoad(String key, Executor executor) {
+                        return withLoadDeadline(loader.apply(key)).toFuture();
+                    }
+
+                    @Override
+                    public CompletableFuture<Optional<V>> asyncReload(String key, Optional<V> oldValue, Executor executor) {
+                        return withLoadDeadline(reloader.apply(key, oldValue)).toFuture();
+                    }
+                });
+
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, loadingCache, name);
+    }
+
+    //empty Mono for a negative entry, failed loads are not cached
+    public Mono<V> get(String key) {
+        //thenApply gives every caller its own future, so a cancelled caller can't cancel the shared load
+        return CallerDeadline.apply(Mono.defer(() -> Mono.fromFuture(cache.get(key)
+                .thenApply(value -> value.orElse(null)))), "the cached load of " + key);
+    }
+
+    //without loading: empty Mono when the key isn't cached, an empty Optional for a negative entry
+    public Mono<Optional<V>> getIfPresent(String key) {
+        var value = cache.getIfPresent(key);
+        return value == null ? Mono.empty() : Mono.fromFuture(value.thenApply(Function.identity()));
+    }
+
+    public void invalidate(String key) {
+        cache.synchronous().invalidate(key);
+    }
+
+    private Mono<Optional<V>> withLoadDeadline(Mono<Optional<V>> load) {
+        return load.contextWrite(context -> context.put(Deadline.class, Deadline.after(loadTimeout)));
+    }
+}
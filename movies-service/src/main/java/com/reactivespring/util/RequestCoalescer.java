@@ -0,0 +1,86 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+//single-flight: concurrent callers asking for the same key share one upstream call.
+//late joiners get the result replayed, one caller cancelling only drops its own subscription
+//(upstream is cancelled once nobody waits for it) and the key is released when the call terminates.
+//the shared call runs under the Deadline of the caller that started it, but never one shorter than callTimeout, so
+//an impatient first caller can't fail the others - each caller's own Deadline only bounds its own wait (CallerDeadline)
+public class RequestCoalescer<T> {
+
+    private final Map<String, Flux<T>> inFlight = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final Duration callTimeout;
+    private final Counter requestCounter;
+    private final Counter coalescedCounter;
+
+    public RequestCoalescer(String name, boolean enabled, Duration callTimeout, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.callTimeout = callTimeout;
+        this.requestCounter = Counter.builder("movies.client.coalescing.requests")
+                .description("Calls that went through the coalescer")
+                .tag("client", name)
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("movies.client.coalescing.coalesced")
+                .description("Calls that joined an upstream call already in flight")
+                .tag("client", name)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.coalescing.inflight", inFlight, Map::size)
+                .description("Distinct upstream calls currently in flight")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<T> coalesce(String key, Supplier<Mono<T>> upstream) {
+        return coalesceMany(key, () -> upstream.get().flux())
+                .singleOrEmpty();
+    }
+
+    public Flux<T> coalesceMany(String key, Supplier<Flux<T>> upstream) {
+        if (!enabled) {
+            return Flux.defer(upstream);
+        }
+        return CallerDeadline.apply(Flux.defer(() -> {
+            requestCounter.increment();
+            var created = new AtomicBoolean();
+            Flux<T> shared = inFlight.computeIfAbsent(key, k -> {
+                created.set(true);
+                return share(k, upstream.get());
+            });
+            if (!created.get()) {
+                coalescedCounter.increment();
+            }
+            return shared;
+        }), "the shared call " + key);
+    }
+
+    private Flux<T> share(String key, Flux<T> upstream) {
+        var sharedRef = new AtomicReference<Flux<T>>();
+        Runnable release = () -> inFlight.remove(key, sharedRef.get()); //only if the key is still ours
+        Flux<T> shared = upstream
+                .contextWrite(context -> Deadline.from(context)
+                        .filter(deadline -> deadline.remaining().compareTo(callTimeout) < 0)
+                        .map(deadline -> context.put(Deadline.class, Deadline.after(callTimeout)))
+                        .orElse(context))
+                //release before complete/error reach the callers - a caller that already got its answer and asks
+                //again must start a new call, not join the finished one and get its replayed result
+                .doOnTerminate(release)
+                .doOnCancel(release) //last caller gone
+                .replay()
+                .refCount();
+        sharedRef.set(shared);
+        return shared;
+    }
+}
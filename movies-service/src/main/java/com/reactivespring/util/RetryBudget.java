@@ -0,0 +1,42 @@
+package com.reactivespring.util;
+
+//token bucket for retries: every successful call deposits depositPerSuccess tokens, every retry takes one.
+//with depositPerSuccess = 0.2 retries can't exceed ~20% of the successful traffic, so when a downstream is
+//failing hard the retries dry up instead of multiplying its load. minRetriesPerSecond keeps a small floor
+//so low traffic services can still retry the odd failure
+public class RetryBudget {
+
+    private final double depositPerSuccess;
+    private final double minRetriesPerSecond;
+    private final double maxBalance;
+
+    private double balance;
+    private long lastRefillNanos;
+
+    public RetryBudget(double depositPerSuccess, double minRetriesPerSecond, double maxBalance) {
+        this.depositPerSuccess = depositPerSuccess;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalance = maxBalance;
+        this.balance = Math.min(maxBalance, minRetriesPerSecond);
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized void deposit() {
+        balance = Math.min(maxBalance, balance + depositPerSuccess);
+    }
+
+    public synchronized boolean tryWithdraw() {
+        long now = System.nanoTime();
+        balance = Math.min(maxBalance, balance + (now - lastRefillNanos) / 1_000_000_000d * minRetriesPerSecond);
+        lastRefillNanos = now;
+        if (balance >= 1) {
+            balance -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized double balance() {
+        return balance;
+    }
+}
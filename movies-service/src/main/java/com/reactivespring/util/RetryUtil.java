@@ -2,18 +2,135 @@ package com.reactivespring.util;
 
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.reactivestreams.Publisher;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Component
+@RequiredArgsConstructor
 public class RetryUtil {
 
-    public static Retry retrySpec() {
-        return Retry.fixedDelay(3, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException)
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ClientRetries> clientRetries = new ConcurrentHashMap<>();
+
+    @Value("${restClient.retry.maxAttempts:3}")
+    private long maxAttempts;
+
+    @Value("${restClient.retry.minBackoff:200ms}")
+    private Duration minBackoff;
+
+    @Value("${restClient.retry.maxBackoff:2s}")
+    private Duration maxBackoff;
+
+    @Value("${restClient.retry.jitter:0.5}")
+    private double jitter;
+
+    @Value("${restClient.retry.budget.depositPerSuccess:0.2}")
+    private double budgetDepositPerSuccess;
+
+    @Value("${restClient.retry.budget.minRetriesPerSecond:10}")
+    private double budgetMinRetriesPerSecond;
+
+    @Value("${restClient.retry.budget.maxBalance:100}")
+    private double budgetMaxBalance;
+
+    //exponential backoff with jitter so callers don't retry in lockstep, each retry has to be paid from the client's budget.
+    //a retry the request's Deadline can't wait for is not made - the failure is returned right away
+    public Retry retrySpec(String client) {
+        ClientRetries retries = retriesFor(client);
+        RetryBackoffSpec backoff = Retry.backoff(maxAttempts, minBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(jitter)
+                .filter(ex -> isRetryable(ex) && retries.tryAcquire())
+                .doBeforeRetry(retrySignal -> retries.attempted.increment())
                 .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) ->
                         Exceptions.propagate(retrySignal.failure())
                 );
+
+        return new Retry() {
+            @Override
+            public Publisher<?> generateCompanion(Flux<RetrySignal> retrySignals) {
+                //the companion is subscribed with the caller's context, that's where the Deadline is
+                return Flux.deferContextual(context -> Deadline.from(context)
+                        .map(deadline -> backoff.generateCompanion(retrySignals.concatMap(retrySignal -> {
+                            if (isRetryable(retrySignal.failure()) && !hasTimeToRetry(deadline, retrySignal.totalRetries())) {
+                                retries.outOfTime.increment();
+                                return Mono.error(retrySignal.failure());
+                            }
+                            return Mono.just(retrySignal);
+                        })))
+                        .orElseGet(() -> backoff.generateCompanion(retrySignals)));
+            }
+        };
+    }
+
+    public void recordSuccess(String client) {
+        retriesFor(client).budget.deposit();
+    }
+
+    //the backoff before the next attempt, without jitter, has to fit in what's left
+    private boolean hasTimeToRetry(Deadline deadline, long retriesSoFar) {
+        long backoffMillis = minBackoff.toMillis() << Math.min(retriesSoFar, 20);
+        return deadline.remaining().toMillis() > Math.min(backoffMillis, maxBackoff.toMillis());
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        //5xx from the downstream, or the request never got a response (connect failure, response timeout)
+        return ex instanceof MoviesInfoServerException || ex instanceof ReviewsServerException
+                || ex instanceof WebClientRequestException;
+    }
+
+    private ClientRetries retriesFor(String client) {
+        return clientRetries.computeIfAbsent(client, name -> new ClientRetries(name,
+                new RetryBudget(budgetDepositPerSuccess, budgetMinRetriesPerSecond, budgetMaxBalance)));
+    }
+
+    private class ClientRetries {
+        private final RetryBudget budget;
+        private final Counter attempted;
+        private final Counter suppressed;
+        private final Counter outOfTime;
+
+        ClientRetries(String client, RetryBudget budget) {
+            this.budget = budget;
+            this.attempted = Counter.builder("movies.client.retries")
+                    .description("Retries sent to the downstream")
+                    .tags("client", client, "outcome", "attempted")
+                    .register(meterRegistry);
+            this.suppressed = Counter.builder("movies.client.retries")
+                    .description("Retries skipped because the retry budget was empty")
+                    .tags("client", client, "outcome", "suppressed")
+                    .register(meterRegistry);
+            this.outOfTime = Counter.builder("movies.client.retries")
+                    .description("Retries skipped because the request deadline would pass first")
+                    .tags("client", client, "outcome", "deadline")
+                    .register(meterRegistry);
+            Gauge.builder("movies.client.retry.budget", budget, RetryBudget::balance)
+                    .description("Retry tokens currently available")
+                    .tag("client", client)
+                    .register(meterRegistry);
+        }
+
+        boolean tryAcquire() {
+            if (budget.tryWithdraw()) {
+                return true;
+            }
+            suppressed.increment();
+            return false;
+        }
     }
 }
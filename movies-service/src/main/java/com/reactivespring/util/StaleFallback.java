@@ -0,0 +1,88 @@
+package com.reactivespring.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+//last-known-good value per key. when a value is stored and the fresh call fails (fallbackOn) or takes longer
+//than latencyThreshold, the stored value is returned at once and the request is marked stale (StaleResponse).
+//the fresh call keeps running detached and refreshes the store when it completes.
+//errors that don't match fallbackOn (e.g. 404) drop the stored value and are propagated
+@Slf4j
+public class StaleFallback<V> {
+
+    private final String name;
+    private final boolean enabled;
+    private final Duration latencyThreshold;
+    private final Predicate<Throwable> fallbackOn;
+    private final Cache<String, V> lastKnownGood;
+    private final Counter onErrorCounter;
+    private final Counter onLatencyCounter;
+
+    public StaleFallback(String name, boolean enabled, long maxSize, Duration maxAge, Duration latencyThreshold,
+                         Predicate<Throwable> fallbackOn, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.enabled = enabled;
+        this.latencyThreshold = latencyThreshold;
+        this.fallbackOn = fallbackOn;
+        this.lastKnownGood = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxAge)
+                .build();
+        this.onErrorCounter = staleCounter(name, "error", meterRegistry);
+        this.onLatencyCounter = staleCounter(name, "latency", meterRegistry);
+    }
+
+    public Mono<V> withFallback(String key, Mono<V> fresh) {
+        if (!enabled) {
+            return fresh;
+        }
+        Mono<V> stored = fresh
+                .doOnNext(value -> lastKnownGood.put(key, value))
+                .doOnError(fallbackOn.negate(), ex -> lastKnownGood.invalidate(key));
+
+        return Mono.deferContextual(context -> {
+            V stale = lastKnownGood.getIfPresent(key);
+            if (stale == null) {
+                return stored;
+            }
+            //subscribed detached so a timeout below doesn't cancel it - the late answer still refreshes the store
+            Sinks.One<V> result = Sinks.one();
+            stored.subscribe(result::tryEmitValue, result::tryEmitError, result::tryEmitEmpty, Context.of(context));
+
+            return result.asMono()
+                    .timeout(latencyThreshold, Mono.fromSupplier(() -> serveStale(stale, onLatencyCounter, context)))
+                    .onErrorResume(fallbackOn, ex -> {
+                        log.info("Serving stale {} for {} : {}", name, key, ex.toString());
+                        return Mono.just(serveStale(stale, onErrorCounter, context));
+                    });
+        });
+    }
+
+    public void clear() {
+        lastKnownGood.invalidateAll();
+    }
+
+    private V serveStale(V stale, Counter counter, ContextView context) {
+        counter.increment();
+        context.<StaleResponse>getOrEmpty(StaleResponse.class)
+                .ifPresent(staleResponse -> staleResponse.markStale(name));
+        return stale;
+    }
+
+    private static Counter staleCounter(String client, String reason, MeterRegistry meterRegistry) {
+        return Counter.builder("movies.client.stale")
+                .description("Responses served from the last-known-good store")
+                .tags("client", client, "reason", reason)
+                .register(meterRegistry);
+    }
+}
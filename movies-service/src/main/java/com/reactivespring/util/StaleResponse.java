@@ -0,0 +1,23 @@
+package com.reactivespring.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+//per request holder in the Reactor Context (key StaleResponse.class), filled by StaleFallback and turned
+//into a Warning header by StaleResponseFilter
+public class StaleResponse {
+
+    private final Set<String> staleSources = ConcurrentHashMap.newKeySet();
+
+    public void markStale(String source) {
+        staleSources.add(source);
+    }
+
+    public boolean isStale() {
+        return !staleSources.isEmpty();
+    }
+
+    public Set<String> getStaleSources() {
+        return staleSources;
+    }
+}
@@ -0,0 +1,12 @@
+package com.reactivespring.util;
+
+import lombok.Value;
+
+//a downstream value with the ETag it came with (null when the service didn't send one), so a cached copy can be
+//revalidated with If-None-Match
+@Value
+public class Versioned<V> {
+
+    V value;
+    String eTag;
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+//timed loop for the @Tag("benchmark") tests - there is no JMH in this build. reports time and bytes allocated
+//by the calling thread per operation, after a warmup that lets the JIT settle
+final class Benchmarks {
+
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    private Benchmarks() {
+    }
+
+    //the operation returns a size so its result is used and can't be optimized away
+    static Result measure(Callable<Integer> operation) throws Exception {
+        var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += operation.call();
+        }
+        long allocatedBefore = threadMXBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.call();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        if (sink == 0) {
+            throw new IllegalStateException("operation produced nothing");
+        }
+        return new Result((double) elapsed / ITERATIONS, allocated / ITERATIONS);
+    }
+
+    static final class Result {
+        private final double nanosPerOp;
+        private final long bytesPerOp;
+
+        private Result(double nanosPerOp, long bytesPerOp) {
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%8.1f us/op %10d B/op", nanosPerOp / 1000, bytesPerOp);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.reactivespring.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//JSON vs Smile for the payloads of the internal hops - a MovieInfo and a movie's reviews. run with ./gradlew benchmark
+@Tag("benchmark")
+class CodecBenchmark {
+
+    private static final int REVIEWS = 500;
+    private static final TypeReference<List<Review>> REVIEW_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper smile = Jackson2ObjectMapperBuilder.smile().build();
+
+    private final MovieInfo movieInfo = new MovieInfo("abc", "Batman Begins", 2005,
+            List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    private final List<Review> reviews = IntStream.range(0, REVIEWS)
+            .mapToObj(i -> new Review(String.valueOf(i), 1L, "Review number " + i + " of an awesome movie", 8.5))
+            .collect(Collectors.toList());
+
+    @Test
+    void jsonVsSmile() throws Exception {
+        run("json ", json);
+        run("smile", smile);
+    }
+
+    private void run(String name, ObjectMapper mapper) throws Exception {
+        byte[] movieInfoBytes = mapper.writeValueAsBytes(movieInfo);
+        byte[] reviewBytes = mapper.writeValueAsBytes(reviews);
+        assertEquals(reviews, mapper.readValue(reviewBytes, REVIEW_LIST));
+
+        Benchmarks.Result encode = Benchmarks.measure(() -> mapper.writeValueAsBytes(movieInfo).length
+                + mapper.writeValueAsBytes(reviews).length);
+        Benchmarks.Result decode = Benchmarks.measure(() -> mapper.readValue(movieInfoBytes, MovieInfo.class).getCast().size()
+                + mapper.readValue(reviewBytes, REVIEW_LIST).size());
+
+        System.out.printf("%s : movieInfo %4d B, %d reviews %6d B%n", name, movieInfoBytes.length, REVIEWS, reviewBytes.length);
+        System.out.println(name + " encode : " + encode);
+        System.out.println(name + " decode : " + decode);
+    }
+}
@@ -0,0 +1,94 @@
+package com.reactivespring.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.reactivespring.config.ConcurrencyLimitProperties;
+import com.reactivespring.filter.ConcurrencyLimitFilter;
+import com.reactivespring.util.ConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//goodput past saturation with and without ConcurrencyLimitFilter. the simulated service handles CAPACITY requests
+//at once in SERVICE_TIME, beyond that every request slows down in proportion (processor sharing). requests arrive
+//open loop at twice the capacity and give up after DEADLINE. run with ./gradlew benchmark - prints requests/s
+//answered within the deadline, shed with 503 and timed out
+@Tag("benchmark")
+class LoadSheddingBenchmark {
+
+    private static final int CAPACITY = 4;
+    private static final Duration SERVICE_TIME = Duration.ofMillis(50);
+    private static final Duration DEADLINE = Duration.ofMillis(500);
+    private static final Duration ARRIVAL_INTERVAL = Duration.ofMillis(6); //~160 req/s, capacity is 80 req/s
+    private static final Duration RUN = Duration.ofSeconds(5);
+
+    @Test
+    void goodputPastSaturation() {
+        //a debug line per shed request would be the bottleneck
+        ((Logger) LoggerFactory.getLogger(ConcurrencyLimitFilter.class)).setLevel(Level.INFO);
+        Outcome unlimited = run(false);
+        Outcome limited = run(true);
+
+        System.out.printf("offered %d req/s, capacity %d req/s%n", Duration.ofSeconds(1).dividedBy(ARRIVAL_INTERVAL),
+                CAPACITY * Duration.ofSeconds(1).dividedBy(SERVICE_TIME));
+        System.out.println("without limit : " + unlimited);
+        System.out.println("with limit    : " + limited);
+        assertTrue(limited.ok.get() > unlimited.ok.get());
+    }
+
+    private Outcome run(boolean enabled) {
+        var properties = new ConcurrencyLimitProperties();
+        properties.setEnabled(enabled);
+        var limiter = new ConcurrencyLimiter(20, 2, 100, 0.2, 1.5, 600, Duration.ofMillis(100), 10, new SimpleMeterRegistry());
+        var filter = new ConcurrencyLimitFilter(properties, limiter);
+        var active = new AtomicInteger();
+        WebFilterChain service = exchange -> Mono.defer(() -> {
+            int concurrent = active.incrementAndGet();
+            return Mono.delay(Duration.ofNanos((long) (SERVICE_TIME.toNanos() * Math.max(1.0, (double) concurrent / CAPACITY))))
+                    .doFinally(signal -> active.decrementAndGet())
+                    .then();
+        });
+
+        var outcome = new Outcome();
+        Flux.interval(ARRIVAL_INTERVAL)
+                .take(RUN)
+                .flatMap(i -> {
+                    var exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/abc"));
+                    return filter.filter(exchange, service)
+                            .timeout(DEADLINE)
+                            .doOnSuccess(ignored -> (exchange.getResponse().getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE
+                                    ? outcome.shed : outcome.ok).incrementAndGet())
+                            .onErrorResume(ex -> {
+                                outcome.timedOut.incrementAndGet();
+                                return Mono.empty();
+                            });
+                }, Integer.MAX_VALUE)
+                .blockLast();
+        return outcome;
+    }
+
+    private static final class Outcome {
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger shed = new AtomicInteger();
+        private final AtomicInteger timedOut = new AtomicInteger();
+
+        @Override
+        public String toString() {
+            long seconds = RUN.toSeconds();
+            return String.format("ok %5d req/s  shed %5d req/s  timed out %5d req/s", ok.get() / seconds, shed.get() / seconds,
+                    timedOut.get() / seconds);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.reactivespring.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.MovieEnvelope;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//POJO aggregation (decode MovieInfo + reviews, encode Movie) vs the passthrough envelope (MovieEnvelope) for one
+//movie with REVIEWS reviews. run with ./gradlew benchmark - prints time and allocated bytes per aggregation
+@Tag("benchmark")
+class MovieAggregationBenchmark {
+
+    private static final int REVIEWS = 500;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final DefaultDataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    @Test
+    void pojoVsPassthrough() throws Exception {
+        byte[] movieInfo = objectMapper.writeValueAsBytes(new MovieInfo("abc", "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+        byte[] reviews = objectMapper.writeValueAsBytes(IntStream.range(0, REVIEWS)
+                .mapToObj(i -> new Review(String.valueOf(i), 1L, "Review number " + i + " of an awesome movie", 8.5))
+                .collect(Collectors.toList()));
+
+        //same document either way
+        assertEquals(objectMapper.readTree(pojo(movieInfo, reviews)), objectMapper.readTree(passthrough(movieInfo, reviews)));
+
+        Benchmarks.Result pojo = Benchmarks.measure(() -> pojo(movieInfo, reviews).length);
+        Benchmarks.Result passthrough = Benchmarks.measure(() -> passthrough(movieInfo, reviews).length);
+
+        System.out.printf("movie with %d reviews, %d bytes%n", REVIEWS, movieInfo.length + reviews.length);
+        System.out.println("pojo        : " + pojo);
+        System.out.println("passthrough : " + passthrough);
+    }
+
+    private byte[] pojo(byte[] movieInfo, byte[] reviews) throws Exception {
+        MovieInfo info = objectMapper.readValue(movieInfo, MovieInfo.class);
+        List<Review> reviewList = objectMapper.readValue(reviews, new TypeReference<List<Review>>() {
+        });
+        return objectMapper.writeValueAsBytes(new Movie(info, reviewList));
+    }
+
+    //what the server does with the buffers - the raw bodies are written out, collecting them here stands in for the socket
+    private byte[] passthrough(byte[] movieInfo, byte[] reviews) {
+        List<DataBuffer> buffers = MovieEnvelope.movie(bufferFactory, bufferFactory.wrap(movieInfo), bufferFactory.wrap(reviews))
+                .collectList()
+                .block();
+        int size = buffers.stream().mapToInt(DataBuffer::readableByteCount).sum();
+        byte[] written = new byte[size];
+        int offset = 0;
+        for (DataBuffer buffer : buffers) {
+            int count = buffer.readableByteCount();
+            buffer.read(written, offset, count);
+            offset += count;
+        }
+        return written;
+    }
+}
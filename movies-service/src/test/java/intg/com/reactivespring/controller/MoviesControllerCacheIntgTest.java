@@ -0,0 +1,92 @@
+package com.reactivespring.controller;
+
+import com.github.tomakehurst.wiremock.client.WireMock;
+import com.reactivespring.util.Deadline;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+
+//the near cache on, as it runs by default - loads through it carry a deadline like direct calls, their own one
+//(restClient.cache.loadTimeout), since other requests may be waiting for the same load
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 0)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl=http://localhost:${wiremock.server.port}/v1/movieinfos",
+                "restClient.reviewsUrl=http://localhost:${wiremock.server.port}/v1/reviews",
+                "restClient.cache.enabled=true"
+        }
+)
+public class MoviesControllerCacheIntgTest {
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.resetAllRequests();
+    }
+
+    @Test
+    void retrieveMovieById_cacheLoadRunsUnderLoadTimeout() {
+        //given
+        var movieId = "cached";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header(Deadline.HEADER, "3000") //room for the first request of a new context
+                .exchange()
+                .expectStatus().isOk();
+
+        //then - the miss is loaded within loadTimeout (5s), not within the 3s of the request that missed
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId))
+                .withHeader(Deadline.HEADER, matching("[34][0-9]{3}|5000")));
+    }
+
+    @Test
+    void retrieveMovieById_cacheLoadWithoutCallerDeadline() {
+        //given
+        var movieId = "cachedNoDeadline";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk();
+
+        //then - loadTimeout travels with the load
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId))
+                .withHeader(Deadline.HEADER, matching("[1-9][0-9]{0,3}")));
+    }
+}
@@ -2,18 +2,40 @@ package com.reactivespring.controller;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.util.Deadline;
+import com.reactivespring.util.StaleFallback;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test") //this profile need to be different from other profiles used in Application
@@ -22,7 +44,9 @@ import static com.github.tomakehurst.wiremock.client.WireMock.*;
 @TestPropertySource(
         properties = {
                 "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
-                "restClient.reviewsUrl=http://localhost:8084/v1/reviews"
+                "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+                "restClient.cache.enabled=false", //every test stubs the same movie id with a different response
+                "feed.heartbeat=200ms"
 
         }
 )
@@ -31,6 +55,22 @@ public class MoviesControllerIntgTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    StaleFallback<MovieInfo> movieInfoStaleFallback;
+
+    @Autowired
+    StaleFallback<List<Review>> reviewsStaleFallback;
+
+    @Autowired
+    List<CircuitBreaker> circuitBreakers;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.resetAllRequests(); //request journal is shared by all tests - keep verify() counts per test
+        movieInfoStaleFallback.clear(); //every test stubs the same movie id - no last-known-good value from a previous test
+        reviewsStaleFallback.clear();
+        circuitBreakers.forEach(CircuitBreaker::reset); //the 5xx tests add up - don't let them open the circuit for the others
+    }
 
     @Test
     void retrieveMovieById() {
@@ -62,6 +102,39 @@ public class MoviesControllerIntgTest {
 
     }
 
+    @Test
+    void retrieveMovieById_smile() throws Exception {
+        //given
+        var movieId = "abc";
+        var smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        var movieInfo = new MovieInfo(movieId, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"),
+                LocalDate.parse("2005-06-15"));
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .withHeader("Accept", containing("application/x-jackson-smile"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/x-jackson-smile")
+                        .withBody(smileMapper.writeValueAsBytes(movieInfo))));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when + then - Smile from movies-info-service, JSON to the caller
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    Movie movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(movieInfo, Objects.requireNonNull(movie).getMovieInfo());
+                    assertEquals(2, movie.getReviewList().size());
+                });
+    }
+
     @Test
     void retrieveMovieById_404() {
         //given
@@ -141,6 +214,291 @@ public class MoviesControllerIntgTest {
 
     }
 
+    @Test
+    void retrieveMovieById_5XX_servesStale() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.WARNING);
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withBody("MovieInfo Service Unavailable")));
+
+        //when + then - the last-known-good movie info is served and flagged
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.WARNING, "110 movies-service \"Response is Stale: moviesInfo\"")
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    Movie movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(2, Objects.requireNonNull(movie).getReviewList().size());
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                });
+    }
+
+    @Test
+    void retrieveMovieById_fields() {
+        //given
+        var movieId = "sparse";
+        stubFor(get(urlPathEqualTo("/v1/movieinfos/" + movieId))
+                .withQueryParam("fields", equalTo("movieInfoId,name,year"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("{\"movieInfoId\":\"sparse\",\"name\":\"Batman Begins\",\"year\":2005}")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?fields=name,year", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.movieInfo.year").isEqualTo(2005)
+                .jsonPath("$.movieInfo.cast").doesNotExist()
+                .jsonPath("$.reviewList").doesNotExist();
+
+        //then - the projection is made by the info service, reviews aren't asked for at all
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/movieinfos/" + movieId))
+                .withQueryParam("fields", equalTo("movieInfoId,name,year")));
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
+
+    @Test
+    void retrieveMovieById_unknownField() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?fields=name,budget", "sparse")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void retrieveMovieById_notModified() {
+        //given
+        var movieId = "tagged";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "W/\"1a2b\"")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        var eTag = webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().exists(HttpHeaders.ETAG)
+                .returnResult(Movie.class)
+                .getResponseHeaders().getETag();
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                //then
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void retrieveMovieById_reviewPage() {
+        //given
+        var movieId = "paged";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .withQueryParam("limit", equalTo("2"))
+                .withQueryParam("sort", equalTo("rating"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("X-Next-Cursor", "next-page")
+                        .withBodyFile("reviews.json")));
+
+        //when + then - the page and its cursor come from the review service, nothing is trimmed here
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?reviewLimit=2&reviewSort=rating", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(result -> {
+                    Movie movie = result.getResponseBody();
+                    assertEquals(2, Objects.requireNonNull(movie).getReviewList().size());
+                    assertEquals("next-page", movie.getNextReviewCursor());
+                });
+    }
+
+    @Test
+    void retrieveMovieById_reviewPage_invalid() {
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?reviewSort=oldest", "paged")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        //a cursor the review service rejects is the caller's mistake too
+        stubFor(get(urlEqualTo("/v1/movieinfos/paged"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("cursor", equalTo("bogus"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("review.cursor : invalid cursor for sort newest")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}?reviewLimit=2&reviewCursor=bogus", "paged")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("review.cursor : invalid cursor for sort newest");
+    }
+
+    @Test
+    void retrieveMovieById_deadlinePropagated() {
+        //given
+        var movieId = "budget"; //not coalesced with a retry of another test still in flight for "abc"
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header(Deadline.HEADER, "1000")
+                .exchange()
+                .expectStatus().isOk();
+
+        //then - a deadline is passed on to both services, for these coalesced calls at least restClient.coalescing.callTimeout
+        //(5s) - other requests could join them
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId))
+                .withHeader(Deadline.HEADER, matching("[34][0-9]{3}|5000")));
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/reviews?movieInfoId=" + movieId))
+                .withHeader(Deadline.HEADER, matching("[34][0-9]{3}|5000")));
+    }
+
+    @Test
+    void retrieveMovieById_deadlineExceeded() {
+        //given - an id of its own, the slow stub and its late journal entry must not leak into the other tests
+        var movieId = "slow";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(2000)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when + then - the slow call is given up when the caller's budget runs out
+        var start = System.nanoTime();
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header(Deadline.HEADER, "300")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(1500)) < 0);
+    }
+
+    @Test
+    void retrieveMovieById_downstreamMetrics() {
+        //given
+        var movieId = "metered";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus().isOk();
+
+        //then - outbound latency per downstream, by uri template without the query string
+        webTestClient
+                .get()
+                .uri("/actuator/metrics/http.client.requests?tag={client}&tag={uri}", "client:moviesInfo", "uri:/v1/movieinfos/{id}")
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient
+                .get()
+                .uri("/actuator/metrics/http.client.requests?tag={client}&tag={uri}", "client:reviews", "uri:/v1/reviews")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void retrieveMovieById_5XX_noRetryWithoutTime() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(500)
+                        .withBody("MovieInfo Service Unavailable")));
+
+        //when + then - the first backoff (200ms) doesn't fit in the 150ms budget
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}", movieId)
+                .header(Deadline.HEADER, "150")
+                .exchange()
+                .expectStatus().is5xxServerError();
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/" + movieId)));
+    }
+
     @Test
     void retrieveMovieById_5XX_retry() {
         //given
@@ -191,4 +549,308 @@ public class MoviesControllerIntgTest {
 
         WireMock.verify(4, getRequestedFor(urlPathMatching("/v1/reviews*")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void retrieveMoviesByIds() {
+        //given
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("ids", equalTo("1,2,3"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfos.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoIds", equalTo("1,2,3"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri(uriBuilder -> uriBuilder.path("/v1/movies")
+                        .queryParam("ids", "1,2,3,1")
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(listEntityExchangeResult -> {
+                    List<Movie> movies = listEntityExchangeResult.getResponseBody();
+                    assert Objects.requireNonNull(movies).size() == 2;
+                    assert movies.get(0).getMovieInfo().getName().equals("Batman Begins");
+                    assert movies.get(0).getReviewList().size() == 2;
+                    assert movies.get(1).getMovieInfo().getName().equals("The Dark Knight");
+                    assert movies.get(1).getReviewList().size() == 0;
+                });
+    }
+
+    @Test
+    void streamMovieById() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when
+        var movieEvents = webTestClient
+                .get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieEvent.class)
+                .getResponseBody();
+
+        //then
+        StepVerifier.create(movieEvents)
+                .assertNext(movieEvent -> {
+                    assert movieEvent.getMovieInfo().getName().equals("Batman Begins");
+                    assert movieEvent.getReview() == null;
+                })
+                .assertNext(movieEvent -> assertEquals("Awesome Movie", movieEvent.getReview().getComment()))
+                .assertNext(movieEvent -> assertEquals("Excellent Movie", movieEvent.getReview().getComment()))
+                .verifyComplete();
+    }
+
+    @Test
+    void streamMovieById_reviewsAreNotBuffered() {
+        //given - the review service sends its array over 2s
+        var movieId = "slow";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        var reviews = IntStream.range(0, 20)
+                .mapToObj(i -> "{\"reviewId\":\"" + i + "\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}")
+                .collect(Collectors.joining(",", "[", "]"));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody(reviews)
+                        .withChunkedDribbleDelay(10, 2000)));
+
+        //when
+        long start = System.nanoTime();
+        var arrivals = webTestClient
+                .get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(MovieEvent.class)
+                .getResponseBody()
+                .filter(movieEvent -> movieEvent.getReview() != null)
+                .map(movieEvent -> Duration.ofNanos(System.nanoTime() - start))
+                .collectList()
+                .block();
+
+        //then - the first review line is written while the rest of the array is still coming
+        assertEquals(20, arrivals.size());
+        assertTrue(arrivals.get(0).compareTo(Duration.ofMillis(1000)) < 0, "first review after " + arrivals.get(0));
+        assertTrue(arrivals.get(19).compareTo(Duration.ofMillis(1500)) > 0, "last review after " + arrivals.get(19));
+    }
+
+    @Test
+    void streamMovieById_404() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/stream", movieId)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void feedMovieById() {
+        //given
+        var movieId = "live";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+        //the pushed changes, the streams end after them (a real one stays open)
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId + "/stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody(":heartbeat\n\ndata:{\"movieInfoId\":\"live\",\"name\":\"Batman Begins Remastered\",\"year\":2005}\n\n")));
+        stubFor(get(urlEqualTo("/v1/reviews/stream?movieInfoId=" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody("data:{\"reviewId\":\"r3\",\"comment\":\"Still Awesome\",\"rating\":9.5}\n\n")));
+
+        //when
+        var events = webTestClient
+                .get()
+                .uri("/v1/movies/{id}/feed", movieId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<String>>() {
+                })
+                .getResponseBody()
+                .filter(event -> event.event() != null); //heartbeats
+
+        //then - the snapshot first, then the deltas in whatever order they came
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("movie", event.event());
+                    assertTrue(event.data().contains("Batman Begins"));
+                })
+                .recordWith(ArrayList::new)
+                .expectNextCount(2)
+                .consumeRecordedWith(deltas -> {
+                    var byName = deltas.stream().collect(Collectors.toMap(ServerSentEvent::event, ServerSentEvent::data));
+                    assertTrue(byName.get("movieInfo").contains("Batman Begins Remastered"));
+                    assertTrue(byName.get("review").contains("Still Awesome"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void feedMovieById_404() {
+        //given
+        var movieId = "gone";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[]")));
+        stubFor(get(urlPathMatching("/v1/(movieinfos/gone|reviews)/stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody(":heartbeat\n\n")));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/feed", movieId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void feedMovieById_slow404() {
+        //given - the snapshot takes longer than a heartbeat interval
+        var movieId = "slowgone";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)
+                        .withFixedDelay(800)));
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo(movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBody("[]")));
+        stubFor(get(urlPathMatching("/v1/(movieinfos/slowgone|reviews)/stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "text/event-stream")
+                        .withBody(":heartbeat\n\n")));
+
+        //when + then - no heartbeat has committed a 200 meanwhile
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/feed", movieId)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void retrieveRawMovieById() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when + then - same document as the POJO path
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/raw", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(Movie.class)
+                .consumeWith(movieEntityExchangeResult -> {
+                    Movie movie = movieEntityExchangeResult.getResponseBody();
+                    assertEquals(2, Objects.requireNonNull(movie).getReviewList().size());
+                    assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                });
+    }
+
+    @Test
+    void retrieveRawMovieById_reviews_404() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/raw", movieId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.movieInfo.name").isEqualTo("Batman Begins")
+                .jsonPath("$.reviewList").isEmpty();
+    }
+
+    @Test
+    void retrieveRawMovieById_404() {
+        //given
+        var movieId = "abc";
+        stubFor(get(urlEqualTo("/v1/movieinfos/" + movieId))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        //when + then
+        webTestClient
+                .get()
+                .uri("/v1/movies/{id}/raw", movieId)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("There is no MovieInfo available for the passed id : " + movieId);
+    }
+}
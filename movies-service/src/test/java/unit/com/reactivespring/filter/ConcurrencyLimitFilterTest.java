@@ -0,0 +1,169 @@
+package com.reactivespring.filter;
+
+import com.reactivespring.config.ConcurrencyLimitProperties;
+import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.globalerrorhandler.GlobalErrorHandler;
+import com.reactivespring.util.ConcurrencyLimiter;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConcurrencyLimitFilterTest {
+
+    private final ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 10, 0.2, 1.5, 600, Duration.ofMillis(100), 10,
+            new SimpleMeterRegistry());
+
+    ConcurrencyLimitFilterTest() {
+        properties.setRoutes(Map.of("/v1/movies", ConcurrencyLimiter.Priority.LOW));
+        properties.setExcluded(List.of("/v1/movies/*/stream"));
+    }
+
+    @Test
+    void overTheLimit_503WithRetryAfter() {
+        //given
+        var filter = new ConcurrencyLimitFilter(properties, limiter);
+        for (int i = 0; i < 10; i++) {
+            filter.filter(exchange("/v1/movies/abc"), exchange -> Mono.never()).subscribe();
+        }
+        var exchange = exchange("/v1/movies/abc");
+
+        //when
+        StepVerifier.create(filter.filter(exchange, ignored -> Mono.empty())).verifyComplete();
+
+        //then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, exchange.getResponse().getStatusCode());
+        assertEquals("1", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void lowPriorityRouteIsShedBeforeTheLimit() {
+        //given
+        var filter = new ConcurrencyLimitFilter(properties, limiter);
+        for (int i = 0; i < 6; i++) {
+            filter.filter(exchange("/v1/movies/abc"), exchange -> Mono.never()).subscribe();
+        }
+        var batch = exchange("/v1/movies");
+        var single = exchange("/v1/movies/abc");
+
+        //when
+        StepVerifier.create(filter.filter(batch, ignored -> Mono.empty())).verifyComplete();
+        StepVerifier.create(filter.filter(single, ignored -> Mono.empty())).verifyComplete();
+
+        //then
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, batch.getResponse().getStatusCode());
+        assertNull(single.getResponse().getStatusCode());
+    }
+
+    @Test
+    void excludedRouteIsNotLimited() {
+        //given
+        var filter = new ConcurrencyLimitFilter(properties, limiter);
+        for (int i = 0; i < 10; i++) {
+            filter.filter(exchange("/v1/movies/abc/stream"), exchange -> Mono.never()).subscribe();
+        }
+
+        //then
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void permitIsReleasedWhenTheRequestCompletes() {
+        //given
+        var filter = new ConcurrencyLimitFilter(properties, limiter);
+
+        //when
+        StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), ignored -> Mono.empty())).verifyComplete();
+        StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), ignored -> Mono.error(new IllegalStateException())))
+                .verifyError(IllegalStateException.class);
+
+        //then
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    private static MockServerWebExchange exchange(String path) {
+        return MockServerWebExchange.from(MockServerHttpRequest.get(path));
+    }
+
+    @Test
+    void serverFailuresShrinkTheLimitOncePerWindow() {
+        //given
+        var adaptive = new ConcurrencyLimiter(10, 1, 10, 0.2, 1.5, 600, Duration.ofMinutes(1), 10, new SimpleMeterRegistry());
+        var filter = new ConcurrencyLimitFilter(properties, adaptive);
+
+        //when - errors that escape the handlers, and 5xx answers of our own
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), ignored -> Mono.error(new IllegalStateException())))
+                    .verifyError(IllegalStateException.class);
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), exchange -> {
+                exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+                return Mono.empty();
+            })).verifyComplete();
+        }
+
+        //then - one backoff for the whole burst
+        assertEquals(9, adaptive.getLimit());
+        assertEquals(0, adaptive.getInFlight());
+    }
+
+    @Test
+    void unavailableDependencyDoesntChangeTheLimit() {
+        //given
+        var adaptive = new ConcurrencyLimiter(10, 1, 10, 0.2, 1.5, 600, Duration.ofMillis(100), 10, new SimpleMeterRegistry());
+        var filter = new ConcurrencyLimitFilter(properties, adaptive);
+        var breakerOpen = CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("reviews"));
+
+        //when - an open breaker, as an error and as the 503 of GlobalErrorHandler, and a failing downstream
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), ignored -> Mono.error(breakerOpen)))
+                    .verifyError(CallNotPermittedException.class);
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), exchange -> {
+                exchange.getAttributes().put(GlobalErrorHandler.HANDLED_EXCEPTION_ATTRIBUTE, breakerOpen);
+                exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                return Mono.empty();
+            })).verifyComplete();
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"), exchange -> {
+                exchange.getAttributes().put(GlobalErrorHandler.HANDLED_EXCEPTION_ATTRIBUTE,
+                        new ReviewsServerException("Server Exception in ReviewsService"));
+                exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+                return Mono.empty();
+            })).verifyComplete();
+        }
+
+        //then
+        assertEquals(10, adaptive.getLimit());
+        assertEquals(0, adaptive.getInFlight());
+    }
+
+    @Test
+    void clientErrorsDontChangeTheLimit() {
+        //given
+        var adaptive = new ConcurrencyLimiter(10, 1, 10, 0.2, 1.5, 600, Duration.ofMillis(100), 10, new SimpleMeterRegistry());
+        var filter = new ConcurrencyLimitFilter(properties, adaptive);
+
+        //when
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(filter.filter(exchange("/v1/movies/abc"),
+                            ignored -> Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND))))
+                    .verifyError(ResponseStatusException.class);
+        }
+
+        //then
+        assertEquals(10, adaptive.getLimit());
+    }
+}
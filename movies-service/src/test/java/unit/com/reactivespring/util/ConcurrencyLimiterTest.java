@@ -0,0 +1,140 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    //one sample per window so every call to onSample updates the limit
+    private ConcurrencyLimiter limiter(int initialLimit) {
+        return new ConcurrencyLimiter(initialLimit, 10, 500, 0.2, 1.5, 600, Duration.ZERO, 1, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void requestsOverTheLimitAreRejected() {
+        //given
+        var limiter = limiter(10);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            permits.add(limiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH).orElseThrow());
+        }
+
+        //then
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH).isEmpty());
+        permits.get(0).ignore();
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH).isPresent());
+    }
+
+    @Test
+    void lowPriorityIsShedFirst() {
+        //given
+        var limiter = limiter(10);
+        for (int i = 0; i < 6; i++) {
+            limiter.tryAcquire(ConcurrencyLimiter.Priority.LOW).orElseThrow();
+        }
+
+        //then - low may only use 60% of the limit, the rest is left for the others
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.LOW).isEmpty());
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL).isPresent());
+        assertTrue(limiter.tryAcquire(ConcurrencyLimiter.Priority.HIGH).isPresent());
+        assertEquals(8, limiter.getInFlight());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsSteady() {
+        //given
+        var limiter = limiter(50);
+
+        //when - the limit is used and latency doesn't move
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(10 * MILLIS, limiter.getLimit(), false);
+        }
+
+        //then
+        assertTrue(limiter.getLimit() > 50, "limit " + limiter.getLimit());
+    }
+
+    @Test
+    void limitDoesNotGrowWhenItIsNotUsed() {
+        //given
+        var limiter = limiter(50);
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            limiter.onSample(10 * MILLIS, 5, false);
+        }
+
+        //then
+        assertEquals(50, limiter.getLimit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyRises() {
+        //given
+        var limiter = limiter(100);
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(10 * MILLIS, 100, false);
+        }
+        int steady = limiter.getLimit();
+
+        //when - latency triples, queues are building up
+        for (int i = 0; i < 10; i++) {
+            limiter.onSample(30 * MILLIS, steady, false);
+        }
+
+        //then
+        assertTrue(limiter.getLimit() < steady, "limit " + limiter.getLimit() + " steady " + steady);
+    }
+
+    @Test
+    void droppedRequestCutsTheLimit() {
+        //given
+        var limiter = limiter(100);
+
+        //when
+        limiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL).orElseThrow().dropped();
+
+        //then
+        assertEquals(90, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void burstOfDropsCutsTheLimitOncePerWindow() {
+        //given
+        var limiter = new ConcurrencyLimiter(100, 10, 500, 0.2, 1.5, 600, Duration.ofMinutes(1), 1, new SimpleMeterRegistry());
+
+        //when
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL).orElseThrow().dropped();
+        }
+
+        //then
+        assertEquals(90, limiter.getLimit());
+    }
+
+    @Test
+    void limitStaysWithinBounds() {
+        //given
+        var limiter = limiter(12);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(ConcurrencyLimiter.Priority.NORMAL).orElseThrow().dropped();
+        }
+
+        //then
+        assertEquals(10, limiter.getLimit());
+    }
+}
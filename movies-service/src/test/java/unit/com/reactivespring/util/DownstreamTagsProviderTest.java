@@ -0,0 +1,61 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DownstreamTagsProviderTest {
+
+    private final DownstreamTagsProvider tagsProvider = new DownstreamTagsProvider();
+
+    @Test
+    void clientAndUriWithoutQuery() {
+        //given
+        var request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8081/v1/reviews?movieInfoIds=a,b,c"))
+                .attribute(WebClient.class.getName() + ".uriTemplate", "http://localhost:8081/v1/reviews?movieInfoIds=a,b,c")
+                .attribute(DownstreamTagsProvider.CLIENT_ATTRIBUTE, "reviews")
+                .build();
+
+        //when
+        Tags tags = Tags.of(tagsProvider.tags(request, ClientResponse.create(HttpStatus.OK).build(), null));
+
+        //then
+        assertEquals("/v1/reviews", tag(tags, "uri"));
+        assertEquals("reviews", tag(tags, "client"));
+        assertEquals("200", tag(tags, "status"));
+        assertEquals("SUCCESS", tag(tags, "outcome"));
+    }
+
+    @Test
+    void requestWithoutClient() {
+        //given
+        var request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/v1/movieinfos/abc"))
+                .attribute(WebClient.class.getName() + ".uriTemplate", "http://localhost:8080/v1/movieinfos/{id}")
+                .build();
+
+        //when
+        Tags tags = Tags.of(tagsProvider.tags(request, null, new IllegalStateException()));
+
+        //then
+        assertEquals("/v1/movieinfos/{id}", tag(tags, "uri"));
+        assertEquals("none", tag(tags, "client"));
+        assertEquals("CLIENT_ERROR", tag(tags, "status"));
+    }
+
+    private static String tag(Tags tags, String key) {
+        return tags.stream()
+                .filter(tag -> tag.getKey().equals(key))
+                .map(Tag::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+}
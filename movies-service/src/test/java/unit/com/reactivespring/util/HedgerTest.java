@@ -0,0 +1,101 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgerTest {
+
+    @Test
+    void slowPrimaryIsBeatenByTheHedge() {
+        //given
+        var meterRegistry = new SimpleMeterRegistry();
+        var hedger = new Hedger("test", true, 0.95, Duration.ofMillis(10), Duration.ofMillis(50), 1, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        //when
+        var result = hedger.hedge(() -> attempts.incrementAndGet() == 1
+                ? Mono.just("primary").delayElement(Duration.ofSeconds(5))
+                : Mono.just("hedge"));
+
+        //then
+        StepVerifier.create(result)
+                .expectNext("hedge")
+                .verifyComplete();
+        assertEquals(2, attempts.get());
+        assertEquals(1, meterRegistry.counter("movies.client.hedges", "client", "test", "outcome", "won").count());
+    }
+
+    @Test
+    void hedgesAreSuppressedWithoutBudget() {
+        //given
+        var meterRegistry = new SimpleMeterRegistry();
+        var hedger = new Hedger("test", true, 0.95, Duration.ofMillis(10), Duration.ofMillis(50), 0.1, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        //when
+        var result = hedger.hedge(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("primary").delayElement(Duration.ofMillis(200));
+        });
+
+        //then
+        StepVerifier.create(result)
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, attempts.get());
+        assertEquals(1, meterRegistry.counter("movies.client.hedges", "client", "test", "outcome", "suppressed").count());
+    }
+
+    @Test
+    void disabledHedgerOnlySendsThePrimary() {
+        //given
+        var hedger = new Hedger("test", false, 0.95, Duration.ofMillis(10), Duration.ofMillis(50), 1, new SimpleMeterRegistry());
+        var attempts = new AtomicInteger();
+
+        //when
+        var result = hedger.hedge(() -> {
+            attempts.incrementAndGet();
+            return Mono.just("primary").delayElement(Duration.ofMillis(100));
+        });
+
+        //then
+        StepVerifier.create(result)
+                .expectNext("primary")
+                .verifyComplete();
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void hedgeDelayFollowsThePrimaries() {
+        //given - primaries answer in 50ms, once there are enough samples hedges go out at that percentile
+        var meterRegistry = new SimpleMeterRegistry();
+        var hedger = new Hedger("test", true, 0.5, Duration.ofMillis(1), Duration.ofSeconds(1), 1, meterRegistry);
+        Flux.range(0, 20)
+                .flatMap(i -> hedger.hedge(() -> Mono.just("primary").delayElement(Duration.ofMillis(50))), 20)
+                .blockLast();
+
+        //when - the primaries slow down to 150ms and every hedge fails right away
+        Flux.range(0, 250)
+                .flatMap(i -> Mono.defer(() -> {
+                    var attempts = new AtomicInteger();
+                    return hedger.hedge(() -> attempts.incrementAndGet() == 1
+                            ? Mono.just("primary").delayElement(Duration.ofMillis(150))
+                            : Mono.error(new IllegalStateException("hedge failed")));
+                }), 25)
+                .blockLast();
+
+        //then - the delay moved up with the primaries, the failed hedges neither count as latency nor as won
+        double delayMillis = meterRegistry.get("movies.client.hedge.delay").gauge().value();
+        assertTrue(delayMillis >= 140, "hedge delay " + delayMillis);
+        assertEquals(0, meterRegistry.counter("movies.client.hedges", "client", "test", "outcome", "won").count());
+    }
+}
@@ -0,0 +1,90 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoadBalancerTest {
+
+    private static final URI FIRST = URI.create("http://first:8080");
+    private static final URI SECOND = URI.create("http://second:8080");
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/v1/movieinfos/abc?x=1"))
+            .build();
+
+    @Test
+    void requestIsRewrittenToTheChosenInstance() {
+        //given
+        var loadBalancer = new LoadBalancer("test", List.of(FIRST), 5, Duration.ofSeconds(2), Duration.ofSeconds(30), 50,
+                new SimpleMeterRegistry());
+        List<URI> sent = new ArrayList<>();
+
+        //when
+        var response = loadBalancer.filter(request, req -> {
+            sent.add(req.url());
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        //then
+        StepVerifier.create(response).expectNextCount(1).verifyComplete();
+        assertEquals(URI.create("http://first:8080/v1/movieinfos/abc?x=1"), sent.get(0));
+    }
+
+    @Test
+    void busyInstanceIsAvoided() {
+        //given
+        var loadBalancer = new LoadBalancer("test", List.of(FIRST, SECOND), 5, Duration.ofSeconds(2), Duration.ofSeconds(30), 50,
+                new SimpleMeterRegistry());
+        List<URI> sent = new ArrayList<>();
+
+        //when - the first request never answers, so whichever instance took it stays busy
+        loadBalancer.filter(request, req -> {
+            sent.add(req.url());
+            return Mono.never();
+        }).subscribe();
+        for (int i = 0; i < 10; i++) {
+            loadBalancer.filter(request, req -> {
+                sent.add(req.url());
+                return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+            }).block();
+        }
+
+        //then
+        String busyHost = sent.get(0).getHost();
+        assertTrue(sent.subList(1, sent.size()).stream().noneMatch(uri -> uri.getHost().equals(busyHost)));
+    }
+
+    @Test
+    void failingInstanceIsEjected() {
+        //given
+        var loadBalancer = new LoadBalancer("test", List.of(FIRST, SECOND), 3, Duration.ofSeconds(2), Duration.ofSeconds(30), 50,
+                new SimpleMeterRegistry());
+        List<URI> sent = new ArrayList<>();
+
+        //when - the first instance answers 500, the second one never answers - it would lose on outstanding requests
+        for (int i = 0; i < 20; i++) {
+            loadBalancer.filter(request, req -> {
+                sent.add(req.url());
+                return req.url().getHost().equals("first")
+                        ? Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build())
+                        : Mono.never();
+            }).subscribe();
+        }
+
+        //then - 3 failures eject the first instance, everything after that goes to the busy second one
+        assertEquals(3, sent.stream().filter(uri -> uri.getHost().equals("first")).count());
+    }
+}
@@ -0,0 +1,76 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.MovieEvent;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieFeedTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+    private final AtomicInteger cancellations = new AtomicInteger();
+    private final Sinks.Many<MovieEvent> upstream = Sinks.many().multicast().directBestEffort();
+
+    private MovieFeed feed(Duration grace) {
+        return new MovieFeed(movieId -> upstream.asFlux()
+                .doOnSubscribe(subscription -> subscriptions.incrementAndGet())
+                .doOnCancel(cancellations::incrementAndGet),
+                grace, meterRegistry);
+    }
+
+    @Test
+    void clientsShareOneUpstream() {
+        //given
+        var feed = feed(Duration.ofMillis(50));
+        var review = MovieEvent.ofReview(new Review("r1", 1L, "Awesome Movie", 9.0));
+
+        //when
+        var first = StepVerifier.create(feed.events("1")).expectNext(review).thenCancel().verifyLater();
+        var second = StepVerifier.create(feed.events("1")).expectNext(review).thenCancel().verifyLater();
+        upstream.tryEmitNext(review);
+
+        //then
+        first.verify(Duration.ofSeconds(1));
+        second.verify(Duration.ofSeconds(1));
+        assertEquals(1, subscriptions.get());
+        assertEquals(1.0, meterRegistry.get("movies.feed.upstreams").gauge().value());
+    }
+
+    @Test
+    void upstreamIsCancelledAfterTheLastClientLeft() throws InterruptedException {
+        //given
+        var feed = feed(Duration.ofMillis(50));
+        feed.events("1").subscribe().dispose();
+
+        //when
+        Thread.sleep(200);
+
+        //then - gone, the next client connects again
+        assertEquals(1, cancellations.get());
+        assertEquals(0.0, meterRegistry.get("movies.feed.upstreams").gauge().value());
+        feed.events("1").subscribe().dispose();
+        assertEquals(2, subscriptions.get());
+    }
+
+    @Test
+    void clientReturningWithinGraceReusesTheUpstream() {
+        //given
+        var feed = feed(Duration.ofSeconds(1));
+        feed.events("1").subscribe().dispose();
+
+        //when
+        feed.events("1").subscribe().dispose();
+
+        //then
+        assertEquals(1, subscriptions.get());
+        assertEquals(0, cancellations.get());
+    }
+}
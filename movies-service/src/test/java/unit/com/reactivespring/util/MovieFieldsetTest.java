@@ -0,0 +1,60 @@
+package com.reactivespring.util;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieFieldsetTest {
+
+    @Test
+    void noFieldsIsEverything() {
+        var fieldset = MovieFieldset.parse(null);
+
+        assertTrue(fieldset.isWholeMovieInfo());
+        assertTrue(fieldset.isReviews());
+    }
+
+    @Test
+    void movieInfoFieldsWithoutReviews() {
+        var fieldset = MovieFieldset.parse(List.of("name", " year", ""));
+
+        assertEquals(Set.of("movieInfoId", "name", "year"), fieldset.getMovieInfoFields());
+        assertFalse(fieldset.isReviews());
+    }
+
+    @Test
+    void reviewsOnlyStillAsksForTheId() {
+        var fieldset = MovieFieldset.parse(List.of("reviewList"));
+
+        assertEquals(Set.of("movieInfoId"), fieldset.getMovieInfoFields());
+        assertTrue(fieldset.isReviews());
+    }
+
+    @Test
+    void projectionOfACachedMovieInfo() {
+        var movieInfo = new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+
+        var projected = MovieFieldset.parse(List.of("year")).project(movieInfo);
+
+        assertEquals("abc", projected.getMovieInfoId());
+        assertEquals(2005, projected.getYear());
+        assertNull(projected.getName());
+        assertNull(projected.getCast());
+        assertNull(projected.getReleaseDate());
+    }
+
+    @Test
+    void unknownField() {
+        assertThrows(MoviesRequestException.class, () -> MovieFieldset.parse(List.of("budget")));
+    }
+}
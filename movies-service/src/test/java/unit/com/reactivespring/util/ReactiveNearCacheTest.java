@@ -0,0 +1,168 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveNearCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private ReactiveNearCache<String> cache(Mono<Optional<String>> loadResult) {
+        return new ReactiveNearCache<>("test", 100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(1), Duration.ofSeconds(5),
+                key -> Mono.defer(() -> {
+                    loads.incrementAndGet();
+                    return loadResult;
+                }).delayElement(Duration.ofMillis(50)),
+                meterRegistry);
+    }
+
+    @Test
+    void concurrentReadsLoadOnce() {
+        //given
+        var cache = cache(Mono.just(Optional.of("Batman Begins")));
+
+        //when
+        var reads = Flux.range(0, 10)
+                .flatMap(i -> cache.get("abc"));
+
+        //then
+        StepVerifier.create(reads)
+                .expectNextCount(10)
+                .verifyComplete();
+        StepVerifier.create(cache.get("abc"))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    void notFoundIsCachedNegatively() {
+        //given
+        var cache = cache(Mono.just(Optional.empty()));
+
+        //when + then
+        StepVerifier.create(cache.get("abc")).verifyComplete();
+        StepVerifier.create(cache.get("abc")).verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        //given
+        var cache = cache(Mono.error(new RuntimeException("MovieInfo Service Unavailable")));
+
+        //when + then
+        StepVerifier.create(cache.get("abc")).verifyError(RuntimeException.class);
+        StepVerifier.create(cache.get("abc")).verifyError(RuntimeException.class);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getIfPresentDoesNotLoad() {
+        //given
+        var cache = cache(Mono.just(Optional.of("Batman Begins")));
+
+        //when + then
+        StepVerifier.create(cache.getIfPresent("abc")).verifyComplete();
+        assertEquals(0, loads.get());
+
+        StepVerifier.create(cache.get("abc")).expectNext("Batman Begins").verifyComplete();
+        StepVerifier.create(cache.getIfPresent("abc")).expectNext(Optional.of("Batman Begins")).verifyComplete();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void refreshReloadsWithTheOldValue() throws InterruptedException {
+        //given
+        var reloadedFrom = new AtomicReference<Optional<String>>();
+        var reloaded = new CountDownLatch(1);
+        var cache = new ReactiveNearCache<String>("test", 100, Duration.ofMinutes(10), Duration.ofMillis(50), Duration.ofMinutes(1), Duration.ofSeconds(5),
+                key -> Mono.just(Optional.of("v1")),
+                (key, oldValue) -> {
+                    reloadedFrom.set(oldValue);
+                    reloaded.countDown();
+                    return Mono.just(oldValue); //not modified
+                },
+                meterRegistry);
+        StepVerifier.create(cache.get("abc")).expectNext("v1").verifyComplete();
+
+        //when
+        Thread.sleep(100);
+        StepVerifier.create(cache.get("abc")).expectNext("v1").verifyComplete(); //stale read triggers the refresh
+
+        //then
+        assertTrue(reloaded.await(1, TimeUnit.SECONDS));
+        assertEquals(Optional.of("v1"), reloadedFrom.get());
+        StepVerifier.create(cache.get("abc")).expectNext("v1").verifyComplete();
+    }
+
+    @Test
+    void missIsLoadedWithTheLoadDeadline() {
+        //given
+        var loadedWith = new AtomicReference<Optional<Deadline>>();
+        var cache = new ReactiveNearCache<String>("test", 100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(1),
+                Duration.ofSeconds(5),
+                key -> Mono.deferContextual(context -> {
+                    loadedWith.set(Deadline.from(context));
+                    return Mono.just(Optional.of("Batman Begins"));
+                }),
+                meterRegistry);
+        var deadline = Deadline.after(Duration.ofMillis(300));
+
+        //when
+        StepVerifier.create(cache.get("abc").contextWrite(Context.of(Deadline.class, deadline)))
+                .expectNext("Batman Begins")
+                .verifyComplete();
+
+        //then - loadTimeout, the load may be shared with callers that have more time
+        assertTrue(loadedWith.get().orElseThrow().remaining().toMillis() > 1000);
+    }
+
+    @Test
+    void callerWithShortDeadlineDoesNotFailTheOthers() {
+        //given - the impatient caller misses, a patient one waits for the same load
+        Sinks.One<Optional<String>> loaded = Sinks.one();
+        var cache = new ReactiveNearCache<String>("test", 100, Duration.ofMinutes(10), Duration.ofMinutes(1), Duration.ofMinutes(1),
+                Duration.ofSeconds(5),
+                key -> Mono.defer(() -> {
+                    loads.incrementAndGet();
+                    return loaded.asMono();
+                }),
+                meterRegistry);
+
+        //when
+        StepVerifier impatient = StepVerifier.create(cache.get("abc")
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(200)))))
+                .expectError(DeadlineExceededException.class)
+                .verifyLater();
+        StepVerifier patient = StepVerifier.create(cache.get("abc")
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(10)))))
+                .expectNext("Batman Begins")
+                .expectComplete()
+                .verifyLater();
+        impatient.verify();
+        loaded.tryEmitValue(Optional.of("Batman Begins"));
+
+        //then
+        patient.verify();
+        assertEquals(1, loads.get());
+    }
+}
@@ -0,0 +1,125 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer<String> coalescer = new RequestCoalescer<>("test", true, Duration.ofSeconds(5), meterRegistry);
+
+    @Test
+    void concurrentCallersShareOneUpstreamCall() {
+        //given
+        var subscriptions = new AtomicInteger();
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+        Flux<String> upstreamFlux = upstream.asFlux().doOnSubscribe(subscription -> subscriptions.incrementAndGet());
+
+        //when
+        Flux<String> first = coalescer.coalesceMany("abc", () -> upstreamFlux);
+        Flux<String> second = coalescer.coalesceMany("abc", () -> upstreamFlux);
+
+        //then
+        StepVerifier.create(Flux.merge(first, second))
+                .then(() -> {
+                    upstream.tryEmitNext("review1");
+                    upstream.tryEmitNext("review2");
+                    upstream.tryEmitComplete();
+                })
+                .expectNextCount(4)
+                .verifyComplete();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(2.0, meterRegistry.counter("movies.client.coalescing.requests", "client", "test").count());
+        assertEquals(1.0, meterRegistry.counter("movies.client.coalescing.coalesced", "client", "test").count());
+    }
+
+    @Test
+    void lateCallerGetsTheWholeResult() {
+        //given
+        Sinks.Many<String> upstream = Sinks.many().unicast().onBackpressureBuffer();
+
+        //when
+        Flux<String> first = coalescer.coalesceMany("abc", upstream::asFlux);
+        StepVerifier firstVerifier = StepVerifier.create(first)
+                .expectNext("review1", "review2")
+                .expectComplete()
+                .verifyLater();
+        upstream.tryEmitNext("review1");
+
+        //then
+        StepVerifier.create(coalescer.coalesceMany("abc", upstream::asFlux))
+                .then(() -> {
+                    upstream.tryEmitNext("review2");
+                    upstream.tryEmitComplete();
+                })
+                .expectNext("review1", "review2")
+                .verifyComplete();
+        firstVerifier.verify();
+    }
+
+    @Test
+    void upstreamIsCancelledOnlyWhenAllCallersCancel() {
+        //given
+        var cancelled = new AtomicBoolean();
+        Mono<String> upstream = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        //when
+        Disposable first = coalescer.coalesce("abc", () -> upstream).subscribe();
+        Disposable second = coalescer.coalesce("abc", () -> upstream).subscribe();
+        first.dispose();
+
+        //then
+        assertFalse(cancelled.get());
+        second.dispose();
+        assertTrue(cancelled.get());
+        assertEquals(0.0, meterRegistry.get("movies.client.coalescing.inflight").gauge().value());
+    }
+
+    @Test
+    void callerWithShortDeadlineDoesNotFailTheOthers() {
+        //given - the impatient caller starts the call, a patient one joins it
+        var subscriptions = new AtomicInteger();
+        var callDeadline = new AtomicReference<Deadline>();
+        Sinks.One<String> upstream = Sinks.one();
+        Mono<String> upstreamMono = Mono.deferContextual(context -> {
+            subscriptions.incrementAndGet();
+            callDeadline.set(Deadline.from(context).orElseThrow());
+            return upstream.asMono();
+        });
+
+        //when
+        StepVerifier impatient = StepVerifier.create(coalescer.coalesce("abc", () -> upstreamMono)
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(200)))))
+                .expectError(DeadlineExceededException.class)
+                .verifyLater();
+        StepVerifier patient = StepVerifier.create(coalescer.coalesce("abc", () -> upstreamMono)
+                        .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(10)))))
+                .expectNext("Batman Begins")
+                .expectComplete()
+                .verifyLater();
+        impatient.verify();
+        upstream.tryEmitValue("Batman Begins");
+
+        //then
+        patient.verify();
+        assertEquals(1, subscriptions.get());
+        assertTrue(callDeadline.get().remaining().toMillis() > 1000, "the call runs under callTimeout, not 200ms");
+    }
+}
@@ -0,0 +1,50 @@
+package com.reactivespring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void retriesAreSuppressedOnceTheBudgetIsSpent() {
+        //given
+        var retryBudget = new RetryBudget(0.5, 0, 10);
+
+        //when
+        retryBudget.deposit();
+        retryBudget.deposit();
+
+        //then
+        assertTrue(retryBudget.tryWithdraw());
+        assertFalse(retryBudget.tryWithdraw());
+    }
+
+    @Test
+    void balanceIsCapped() {
+        //given
+        var retryBudget = new RetryBudget(1, 0, 2);
+
+        //when
+        for (int i = 0; i < 10; i++) {
+            retryBudget.deposit();
+        }
+
+        //then
+        assertTrue(retryBudget.tryWithdraw());
+        assertTrue(retryBudget.tryWithdraw());
+        assertFalse(retryBudget.tryWithdraw());
+    }
+
+    @Test
+    void floorAllowsRetriesWithoutSuccesses() {
+        //given
+        var retryBudget = new RetryBudget(0.2, 2, 10);
+
+        //then
+        assertTrue(retryBudget.tryWithdraw());
+        assertTrue(retryBudget.tryWithdraw());
+        assertFalse(retryBudget.tryWithdraw());
+    }
+}